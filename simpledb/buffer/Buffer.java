@@ -1,5 +1,7 @@
 package simpledb.buffer;
 
+import java.util.concurrent.CompletableFuture;
+
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 
@@ -18,16 +20,38 @@ public class Buffer {
     private LogMgr lm;
     private int id; // Added for HW3
     private Page contents;
-    private BlockId blk = null;
-    private int pins = 0;
-    private int txnum = -1;
-    private int lsn = -1;
+    private volatile BlockId blk = null;
+    private int pins = 0; // guarded by the buffer manager
+    private volatile int txnum = -1;
+    private long lsn = -1;
+    private long version = 0; // changes when the buffer is modified or reassigned
+    private boolean unlogged = false; // has modifications without a log record
+    private DirtyPageTable dirtyPages; // null if the buffer is not in a buffer pool
+    private volatile CompletableFuture<Void> pendingRead = null;
+    private volatile CompletableFuture<Void> pendingWrite = null;
 
     public Buffer(FileMgr fm, LogMgr lm, int id) {
+        this(fm, lm, id, new Page(fm.blockSize()));
+    }
+
+    /**
+     * Create a buffer that uses the specified page,
+     * such as a page of the buffer manager's page arena.
+     */
+    public Buffer(FileMgr fm, LogMgr lm, int id, Page contents) {
         this.fm = fm;
         this.lm = lm;
         this.id = id;
-        contents = new Page(fm.blockSize());
+        this.contents = contents;
+    }
+
+    /**
+     * Create a buffer of a buffer pool, which records
+     * its modifications in the pool's dirty-page table.
+     */
+    Buffer(FileMgr fm, LogMgr lm, int id, Page contents, DirtyPageTable dirtyPages) {
+        this(fm, lm, id, contents);
+        this.dirtyPages = dirtyPages;
     }
 
     public int getId() {
@@ -48,10 +72,15 @@ public class Buffer {
         return blk;
     }
 
-    public void setModified(int txnum, int lsn) {
+    public synchronized void setModified(int txnum, long lsn) {
         this.txnum = txnum;
+        version++;
+        if (dirtyPages != null)
+            dirtyPages.modified(this, txnum, lsn);
         if (lsn >= 0)
             this.lsn = lsn;
+        else
+            unlogged = true;
     }
 
     /**
@@ -69,28 +98,154 @@ public class Buffer {
     }
 
     /**
-     * Reads the contents of the specified block into
-     * the contents of the buffer.
-     * If the buffer was dirty, then its previous contents
-     * are first written to disk.
+     * Return true if the buffer has modifications
+     * that have not been written to disk.
+     */
+    boolean isModified() {
+        return txnum >= 0;
+    }
+
+    /**
+     * Return true if the buffer has modifications that were not
+     * logged, and so cannot be redone by recovery. They must be
+     * written before the modifying transaction commits.
+     */
+    synchronized boolean hasUnloggedChanges() {
+        return txnum >= 0 && unlogged;
+    }
+
+    /**
+     * Assigns the buffer to the specified block, whose contents
+     * the caller will read (or is reading) into the buffer's page.
+     * The buffer must not be modified, and the caller must wait
+     * for any pending write with {@link #awaitWrite()} before the read.
      *
      * @param b a reference to the data block
+     * @param read the read of the block, which pins wait for,
+     *             or null if the read has already completed
      */
-    void assignToBlock(BlockId b) {
-        flush();
+    synchronized void assignToBlock(BlockId b, CompletableFuture<Void> read) {
         blk = b;
-        fm.read(blk, contents);
+        version++;
         pins = 0;
+        pendingRead = read;
+    }
+
+    /**
+     * Wait until any asynchronous read into the buffer's page is done.
+     */
+    void awaitRead() {
+        CompletableFuture<Void> read = pendingRead;
+        if (read != null) {
+            read.join();
+            pendingRead = null;
+        }
+    }
+
+    /**
+     * Wait until any asynchronous write of the buffer's page is done,
+     * so that the page can be overwritten.
+     */
+    void awaitWrite() {
+        CompletableFuture<Void> write = pendingWrite;
+        if (write != null) {
+            write.join();
+            pendingWrite = null;
+        }
     }
 
     /**
      * Write the buffer to its disk block if it is dirty.
      */
-    void flush() {
+    synchronized void flush() {
         if (txnum >= 0) {
             lm.flush(lsn);
             fm.write(blk, contents);
-            txnum = -1;
+            markClean();
+        }
+    }
+
+    /**
+     * Copy the page of a modified buffer, so that the copy can be
+     * written without holding the buffer manager's lock. The caller
+     * holds the lock, and the buffer must be unpinned, so that no
+     * transaction is in the middle of changing the page.
+     *
+     * @param copy the page to copy into
+     * @return the snapshot to pass to {@link #write(Snapshot)}
+     */
+    synchronized Snapshot snapshot(Page copy) {
+        copy.copyFrom(contents);
+        return new Snapshot(blk, lsn, version, copy);
+    }
+
+    /**
+     * Write a snapshot of the buffer to its disk block,
+     * flushing the log first, unless the buffer has been modified
+     * or reassigned since the snapshot was taken.
+     * Writing the copy instead of the page itself means that a
+     * transaction that pins the buffer meanwhile can change the page
+     * without its change being written before its log record.
+     *
+     * @param s a snapshot of this buffer
+     * @return true if the snapshot was written and the buffer is now clean
+     */
+    synchronized boolean write(Snapshot s) {
+        if (s.version != version || txnum < 0)
+            return false;
+        lm.flush(s.lsn);
+        fm.write(s.blk, s.copy);
+        markClean();
+        return true;
+    }
+
+    /**
+     * Queue a write of the buffer to its disk block if it is dirty.
+     * The log is flushed first, as for {@link #flush()}.
+     * The buffer stays modified until the write is done, so that
+     * it is not replaced while its page is being written, and
+     * it stays modified if the write fails or if the buffer
+     * is modified or reassigned meanwhile.
+     *
+     * @param afm the asynchronous file manager
+     * @return the pending write
+     */
+    synchronized CompletableFuture<Void> flush(AsyncFileMgr afm) {
+        if (txnum < 0)
+            return CompletableFuture.completedFuture(null);
+        lm.flush(lsn);
+        long v = version;
+        pendingWrite = afm.write(blk, contents).thenRun(() -> written(v));
+        return pendingWrite;
+    }
+
+    private synchronized void written(long v) {
+        if (v == version)
+            markClean();
+    }
+
+    private void markClean() {
+        txnum = -1;
+        unlogged = false;
+        if (dirtyPages != null)
+            dirtyPages.cleaned(this);
+    }
+
+    /**
+     * A copy of a modified buffer's page,
+     * and the block and lsn it was copied at.
+     */
+    static class Snapshot {
+        private final BlockId blk;
+        private final long lsn;
+        private final long version;
+        private final Page copy;
+
+        Snapshot(BlockId blk, long lsn, long version, Page copy) {
+            this.blk = blk;
+            this.lsn = lsn;
+            this.version = version;
+            this.copy = copy;
         }
     }
 
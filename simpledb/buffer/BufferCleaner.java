@@ -0,0 +1,76 @@
+package simpledb.buffer;
+
+import simpledb.file.Page;
+import simpledb.file.PageArena;
+
+/**
+ * A background thread that writes back modified buffers before
+ * the replacement strategy chooses them, so that a pin that must
+ * replace a buffer almost always finds a clean one and does not
+ * wait for a write. Every interval, and whenever a pin had to write
+ * a victim itself, the cleaner looks at the next victims of each
+ * partition and writes the modified ones, flushing the log up to
+ * each buffer's lsn first.
+ * A pass that fails is retried at the next interval;
+ * the first failure of a run of failures is reported on System.err.
+ */
+class BufferCleaner extends Thread {
+   private final BufferMgr bm;
+   private final int target;
+   private final long interval;
+   private final Page[] copies;
+   private boolean woken = false;
+
+   /**
+    * @param bm the buffer manager whose buffers are cleaned
+    * @param target the number of next victims to keep clean in each partition
+    * @param interval the time between passes, in milliseconds
+    * @param blocksize the size of a page
+    */
+   BufferCleaner(BufferMgr bm, int target, long interval, int blocksize) {
+      super("buffer cleaner");
+      setDaemon(true);
+      this.bm = bm;
+      this.target = target;
+      this.interval = interval;
+      // aligned like the pool, because the copies may be written with direct I/O
+      PageArena arena = new PageArena(target, blocksize);
+      copies = new Page[target];
+      for (int i = 0; i < target; i++)
+         copies[i] = arena.page(i);
+   }
+
+   public void run() {
+      boolean failing = false;
+      while (true) {
+         try {
+            bm.clean(target, copies);
+            failing = false;
+         } catch (RuntimeException e) {
+            // the buffers stay modified, and the next pass tries again
+            if (!failing)
+               System.err.println(getName() + ": " + e.getMessage()
+                     + (e.getCause() == null ? "" : ": " + e.getCause()));
+            failing = true;
+         }
+         synchronized (this) {
+            if (!woken) {
+               try {
+                  wait(interval);
+               } catch (InterruptedException e) {
+                  return;
+               }
+            }
+            woken = false;
+         }
+      }
+   }
+
+   /**
+    * Start a pass now, because a pin found a modified victim.
+    */
+   synchronized void wake() {
+      woken = true;
+      notify();
+   }
+}
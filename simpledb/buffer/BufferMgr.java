@@ -3,17 +3,162 @@ package simpledb.buffer;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Manages the pinning and unpinning of buffers to blocks.
+ * <p>
+ * The pool is divided into partitions, each with its own lock,
+ * its own buffers, and the map and replacement strategy of those buffers.
+ * A block always lives in the partition chosen by its hash,
+ * so pins of blocks in different partitions do not contend.
+ * Disk I/O is done outside the partition lock: a buffer being read
+ * is already mapped to its block, and other pins of that block
+ * wait for the read on the buffer itself; a modified buffer chosen
+ * for replacement is written back before it is reassigned.
+ * When a partition has no buffer to replace, pins wait in a FIFO
+ * queue, and each buffer that becomes replaceable is handed to the
+ * oldest waiter alone, instead of waking every waiter to race for it.
+ * A {@link BufferCleaner} can be started to write back the
+ * next victims in the background, so that pins seldom have to.
+ * The resident blocks can be saved to a file, periodically by a
+ * {@link BufferPoolDumper}, and read back after a restart
+ * by {@link #warmUp(File)}.
+ * <p>
+ * The replacement strategy is chosen by name:
+ * "lru" ({@link LRUStrategy}), "clock" ({@link ClockStrategy})
+ * or "2q" ({@link TwoQueueStrategy}).
  *
  * @author Edward Sciore
  */
 public class BufferMgr {
-    private Queue<Buffer> unpinned; // LRU
-    private Map<BlockId, Buffer> inMemory;
-    private static final long MAX_TIME = 10000; // 10 seconds
+    /**
+     * The maximum number of partitions in a buffer pool.
+     */
+    public static int PARTITIONS = 16;
+
+    /**
+     * The minimum number of buffers in a partition, so that
+     * small pools (such as those of the tests) have one partition,
+     * and a block is never kept waiting by a tiny partition.
+     */
+    public static int MIN_PARTITION_BUFFERS = 32;
+
+    /**
+     * The share of the buffers that operators may reserve
+     * with {@link #reserve(int, int)}.
+     */
+    public static double RESERVABLE_SHARE = 0.75;
+
+    private Partition[] partitions;
+    private Buffer[] bufferpool;
+    private FileMgr fm;
+    private AsyncFileMgr afm;
+    private BufferCleaner cleaner;
+    private BufferPoolDumper dumper;
+    private DirtyPageTable dirtyPages = new DirtyPageTable();
+    private BufferPoolStats stats;
+    private BufferReservations reservations;
+    private ThreadLocal<Page> scratch; // a page to copy a victim into while writing it
+
+    /**
+     * The time, in milliseconds, that a pin waits for
+     * an unpinned buffer before it gives up.
+     */
+    public static long MAX_TIME = 10000; // 10 seconds
+
+    /**
+     * A partition of the buffer pool: the blocks of its buffers,
+     * the strategy that chooses which buffer to replace, and the
+     * pins waiting for a buffer to replace.
+     * All access is synchronized on the partition.
+     * <p>
+     * A waiter is granted a replaceable buffer by being removed from
+     * the queue; the grant is counted until the waiter uses it, and
+     * other pins that need a buffer do not take one while the number
+     * of replaceable buffers does not exceed the number granted.
+     */
+    private static class Partition {
+        private final Map<BlockId, Buffer> inMemory = new HashMap<>();
+        private final ReplacementStrategy strategy;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int granted = 0;
+
+        Partition(ReplacementStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        /**
+         * Assign an unpinned, unmodified buffer to the block.
+         */
+        void assign(Buffer buff, BlockId blk, CompletableFuture<Void> read) {
+            BlockId previous = buff.block();
+            if (previous != null)
+                inMemory.remove(previous, buff);
+            buff.assignToBlock(blk, read);
+            inMemory.put(blk, buff);
+            strategy.assigned(buff, previous);
+            // pins waiting for the same block will find it in memory
+            for (Iterator<Waiter> iter = waiters.iterator(); iter.hasNext(); ) {
+                Waiter w = iter.next();
+                if (w.blk.equals(blk)) {
+                    iter.remove();
+                    grant(w);
+                }
+            }
+        }
+
+        /**
+         * Return true if a pin that has not been granted
+         * a buffer may choose one to replace.
+         */
+        boolean canReplace() {
+            return waiters.isEmpty() && strategy.available() > granted;
+        }
+
+        /**
+         * Grant the replaceable buffers not yet granted
+         * to the oldest waiters.
+         */
+        void dispatch() {
+            while (!waiters.isEmpty() && strategy.available() > granted)
+                grant(waiters.poll());
+        }
+
+        /**
+         * Record that a granted pin no longer needs its grant,
+         * and pass any buffer it leaves on to the next waiter.
+         */
+        void release() {
+            granted--;
+            dispatch();
+        }
+
+        private void grant(Waiter w) {
+            granted++;
+            w.granted = true;
+            LockSupport.unpark(w.thread);
+        }
+    }
+
+    /**
+     * A pin waiting for a buffer to replace.
+     */
+    private static class Waiter {
+        final BlockId blk;
+        final Thread thread = Thread.currentThread();
+        volatile boolean granted = false;
+
+        Waiter(BlockId blk) {
+            this.blk = blk;
+        }
+    }
 
     /**
      * Creates a buffer manager having the specified number
@@ -24,11 +169,227 @@ public class BufferMgr {
      * @param numbuffs the number of buffer slots to allocate
      */
     public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs) {
-        unpinned = new LinkedList<>();
-        inMemory = new HashMap<>();
+        this(fm, lm, numbuffs, null);
+    }
+
+    /**
+     * Creates a buffer manager that does its write-backs and
+     * prefetch reads through the specified asynchronous file manager.
+     * Write-backs of many buffers are then coalesced and ordered by
+     * block, and prefetching returns without waiting for its reads.
+     *
+     * @param numbuffs the number of buffer slots to allocate
+     * @param afm      the asynchronous file manager, or null
+     */
+    public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs, AsyncFileMgr afm) {
+        this(fm, lm, numbuffs, afm, "lru");
+    }
+
+    /**
+     * Creates a buffer manager that uses the specified
+     * replacement strategy in each of its partitions.
+     *
+     * @param numbuffs    the number of buffer slots to allocate
+     * @param afm         the asynchronous file manager, or null
+     * @param replacement the name of the replacement strategy
+     */
+    public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs, AsyncFileMgr afm, String replacement) {
+        this.fm = fm;
+        this.afm = afm;
+        // aligned like the pool, because a victim may be written with direct I/O
+        scratch = ThreadLocal.withInitial(() -> new PageArena(1, fm.blockSize()).page(0));
+        int numpartitions = Math.max(1, Math.min(PARTITIONS, numbuffs / MIN_PARTITION_BUFFERS));
+        bufferpool = new Buffer[numbuffs];
+        stats = new BufferPoolStats(this, numbuffs, dirtyPages);
+        reservations = new BufferReservations((int) (numbuffs * RESERVABLE_SHARE));
+        PageArena arena = new PageArena(numbuffs, fm.blockSize());
+        List<List<Buffer>> owned = new ArrayList<>();
+        for (int i = 0; i < numpartitions; i++)
+            owned.add(new ArrayList<>());
         for (int i = 0; i < numbuffs; i++) {
-            unpinned.add(new Buffer(fm, lm, i));
+            bufferpool[i] = new Buffer(fm, lm, i, arena.page(i), dirtyPages);
+            owned.get(i % numpartitions).add(bufferpool[i]);
         }
+        partitions = new Partition[numpartitions];
+        for (int i = 0; i < numpartitions; i++)
+            partitions[i] = new Partition(newStrategy(replacement, owned.get(i)));
+    }
+
+    /**
+     * Starts a background thread that keeps the next victims
+     * of the replacement strategy clean, by writing them back
+     * before a pin needs to replace them.
+     *
+     * @param target   the number of clean victims to keep ready in the pool,
+     *                 which is divided between the partitions
+     * @param interval the time between the cleaner's passes, in milliseconds
+     */
+    public synchronized void startCleaner(int target, long interval) {
+        if (cleaner != null)
+            return;
+        int perpartition = (target + partitions.length - 1) / partitions.length;
+        cleaner = new BufferCleaner(this, perpartition, interval, fm.blockSize());
+        cleaner.start();
+    }
+
+    /**
+     * Starts a background thread that saves the resident
+     * blocks to the specified file with {@link #dump(File)}
+     * every interval.
+     *
+     * @param file     the file the blocks are saved to
+     * @param interval the time between saves, in milliseconds
+     */
+    public synchronized void startDumping(File file, long interval) {
+        if (dumper != null)
+            return;
+        dumper = new BufferPoolDumper(this, file, interval);
+        dumper.start();
+    }
+
+    /**
+     * Returns the blocks in the pool, hottest first.
+     * Pinned blocks come first; the unpinned blocks of each
+     * partition follow in the reverse of the order in which
+     * its replacement strategy would choose them as victims,
+     * and the partitions are interleaved, so that the first
+     * blocks of the list are the hottest of the whole pool.
+     *
+     * @return the resident blocks, hottest first
+     */
+    public List<BlockId> residentBlocks() {
+        List<BlockId> pinned = new ArrayList<>();
+        List<List<BlockId>> unpinned = new ArrayList<>();
+        for (Partition p : partitions) {
+            List<BlockId> blocks = new ArrayList<>();
+            synchronized (p) {
+                for (Buffer buff : p.inMemory.values())
+                    if (buff.isPinned())
+                        pinned.add(buff.block());
+                for (Buffer buff : p.strategy.nextVictims(Integer.MAX_VALUE))
+                    if (buff.block() != null)
+                        blocks.add(buff.block());
+            }
+            Collections.reverse(blocks);
+            unpinned.add(blocks);
+        }
+        List<BlockId> result = new ArrayList<>(pinned);
+        for (int i = 0; result.size() < bufferpool.length; i++) {
+            boolean added = false;
+            for (List<BlockId> blocks : unpinned)
+                if (i < blocks.size()) {
+                    result.add(blocks.get(i));
+                    added = true;
+                }
+            if (!added)
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Saves the resident blocks, hottest first, to the specified
+     * file, one block per line. The file is written under another
+     * name and then renamed, so a crash during the save leaves
+     * the previous file intact.
+     *
+     * @param file the file the blocks are saved to
+     */
+    public void dump(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)))) {
+            for (BlockId blk : residentBlocks())
+                out.println(blk.fileName() + "\t" + blk.number());
+            if (out.checkError())
+                throw new IOException("cannot write " + tmp);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot save the buffer pool to " + file, e);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot save the buffer pool to " + file, e);
+        }
+    }
+
+    /**
+     * Starts a background thread that reads the blocks saved by
+     * {@link #dump(File)} back into the pool. The hottest blocks that
+     * fit in the pool are read in the order of their files and block
+     * numbers, each run of consecutive blocks with a single read.
+     * Blocks of temporary files and blocks past the end of their
+     * file are skipped, and so is the whole warm-up if the file
+     * does not exist, or, reported on System.err, if it cannot be
+     * read. Only buffers that have never held a block are
+     * used, so the warm-up does not evict blocks that pins have
+     * read in the meantime.
+     *
+     * @param file the file the blocks were saved to
+     * @return the warm-up thread
+     */
+    public Thread warmUp(File file) {
+        Thread t = new Thread(() -> load(file), "buffer pool warm-up");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Returns the number of buffers written by the
+     * background cleaner, or 0 if it is not running.
+     */
+    public long cleanerWrites() {
+        return stats.getCleanerWrites();
+    }
+
+    /**
+     * Returns the statistics of the buffer pool.
+     */
+    public BufferPoolStats stats() {
+        return stats;
+    }
+
+    /**
+     * Reserves buffers for an operator that will pin many at once,
+     * waiting, in the order of the requests, until at least the
+     * minimum can be reserved without the reservations exceeding the
+     * reservable share of the pool. The operator should size itself
+     * by the number returned, and release it when it is done.
+     *
+     * @param min the fewest buffers the operator can work with
+     * @param max the most buffers the operator can use
+     * @return the number of buffers reserved, at least min unless min
+     *         exceeds the reservable share, in which case all of it
+     * @throws BufferAbortException if the buffers cannot be reserved
+     *         within {@link #MAX_TIME}
+     */
+    public int reserve(int min, int max) {
+        return reservations.reserve(min, max, MAX_TIME);
+    }
+
+    /**
+     * Releases buffers reserved by {@link #reserve(int, int)}.
+     *
+     * @param n the number of buffers to release
+     */
+    public void release(int n) {
+        reservations.release(n);
+    }
+
+    /**
+     * Returns the number of buffers that may still be reserved.
+     */
+    public int unreserved() {
+        return reservations.unreserved();
+    }
+
+    /**
+     * Returns the number of buffers currently reserved.
+     */
+    public int reserved() {
+        return reservations.reserved();
     }
 
     /**
@@ -36,33 +397,90 @@ public class BufferMgr {
      *
      * @return the number of available buffers
      */
-    public synchronized int available() {
-        return unpinned.size();
+    public int available() {
+        int count = 0;
+        for (Partition p : partitions)
+            synchronized (p) {
+                count += p.strategy.available();
+            }
+        return count;
     }
 
     /**
-     * Flushes the dirty buffers modified by the specified transaction.
+     * Flushes the dirty buffers modified by the specified transaction,
+     * pinned or not, and then forces the database files to disk,
+     * so that the transaction's modifications (including any written
+     * earlier by buffer replacement) are durable.
+     * The buffers are found in the dirty-page table,
+     * without looking at the rest of the pool.
      *
      * @param txnum the transaction's id number
      */
-    public synchronized void flushAll(int txnum) {
-        for (Buffer buff : unpinned)
-            if (buff.modifyingTx() == txnum)
-                buff.flush();
+    public void flushAll(int txnum) {
+        flush(dirtyPages.buffersOf(txnum));
+    }
+
+    /**
+     * Flushes the dirty buffers of the specified transaction
+     * that have modifications it did not log, such as the formatting
+     * of new blocks, and then forces the database files to disk.
+     * Its logged modifications can be redone from the log,
+     * so a transaction that commits without forcing its
+     * buffers calls this instead of {@link #flushAll(int)}.
+     *
+     * @param txnum the transaction's id number
+     */
+    public void flushUnlogged(int txnum) {
+        List<Buffer> buffs = new ArrayList<>();
+        for (Buffer buff : dirtyPages.buffersOf(txnum))
+            if (buff.hasUnloggedChanges())
+                buffs.add(buff);
+        if (!buffs.isEmpty())
+            flush(buffs);
+    }
+
+    /**
+     * Flushes every dirty buffer, as a checkpoint requires,
+     * and then forces the database files to disk.
+     */
+    public void flushAll() {
+        flush(dirtyPages.buffers());
+    }
+
+    /**
+     * Returns the smallest recLSN of the dirty buffers: the lsn of
+     * the first logged modification of a buffer that has not been
+     * written since. Every change logged before it is on disk.
+     *
+     * @return the smallest recLSN, or -1 if there is none
+     */
+    public long minRecLsn() {
+        return dirtyPages.minRecLsn();
+    }
+
+    /**
+     * Returns the number of dirty buffers.
+     */
+    public int dirtyCount() {
+        return dirtyPages.size();
     }
 
 
     /**
      * Unpins the specified data buffer. If its pin count
-     * goes to zero, then notify any waiting threads.
+     * goes to zero, then hand it to the oldest pin
+     * waiting for a buffer of its partition.
      *
      * @param buff the buffer to be unpinned
      */
-    public synchronized void unpin(Buffer buff) {
-        buff.unpin();
-        if (!buff.isPinned()) {
-            unpinned.add(buff);
-            notifyAll();
+    public void unpin(Buffer buff) {
+        Partition p = partition(buff.block());
+        synchronized (p) {
+            buff.unpin();
+            if (!buff.isPinned()) {
+                p.strategy.unpinned(buff);
+                p.dispatch();
+            }
         }
     }
 
@@ -71,73 +489,407 @@ public class BufferMgr {
      * waiting until a buffer becomes available.
      * If no buffer becomes available within a fixed
      * time period, then a {@link BufferAbortException} is thrown.
+     * If the block is still being read, by another pin or
+     * by a prefetch, the method waits (without holding any
+     * lock of the buffer manager) until it is read;
+     * if that read fails, the buffer is unpinned and the
+     * failure is thrown.
      *
      * @param blk a reference to a disk block
      * @return the buffer pinned to that block
      */
-    public synchronized Buffer pin(BlockId blk) {
+    public Buffer pin(BlockId blk) {
+        Buffer buff = pinBuffer(blk);
         try {
-            long timestamp = System.currentTimeMillis();
-            Buffer buff = tryToPin(blk);
-            while (buff == null && !waitingTooLong(timestamp)) {
-                wait(MAX_TIME);
-                buff = tryToPin(blk);
-            }
-            if (buff == null)
-                throw new BufferAbortException();
+            buff.awaitRead();
+        } catch (RuntimeException e) {
+            unpin(buff);
+            throw e;
+        }
+        return buff;
+    }
+
+    /**
+     * Pin a buffer to the block. If the block is not in memory,
+     * the unpinned buffer of its partition chosen by the replacement
+     * strategy is written back if it is modified, and then reassigned
+     * and read, with the lock released for the I/O.
+     * If the partition has no buffer to replace, or other pins are
+     * already waiting for one, the pin joins the end of the queue
+     * of waiters and sleeps until it is granted a buffer.
+     */
+    private Buffer pinBuffer(BlockId blk) {
+        Partition p = partition(blk);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_TIME);
+        long waitStart = -1; // when the pin started waiting for an unpinned buffer
+        boolean granted = false;
+        while (true) {
+            Buffer buff;
+            CompletableFuture<Void> read = null;
+            Buffer.Snapshot snapshot = null;
+            Waiter waiter = null;
+            synchronized (p) {
+                buff = p.inMemory.get(blk);
+                if (buff != null) {
+                    p.strategy.pinned(buff);
+                    buff.pin();
+                    if (granted)
+                        p.release();
+                    stats.hit(blk.fileName());
+                    if (waitStart >= 0)
+                        stats.waited(System.nanoTime() - waitStart);
+                    return buff;
+                }
+                if (granted || p.canReplace())
+                    buff = p.strategy.chooseVictim();
+                if (buff == null) {
+                    // wait in line; a pin that lost its buffer keeps its place at the front
+                    if (granted) {
+                        granted = false;
+                        p.granted--;
+                    }
+                    waiter = new Waiter(blk);
+                    if (waitStart < 0) {
+                        waitStart = System.nanoTime();
+                        p.waiters.addLast(waiter);
+                    } else
+                        p.waiters.addFirst(waiter);
+                    p.dispatch();
+                } else if (!buff.isModified()) {
+                    read = new CompletableFuture<>();
+                    if (buff.block() != null)
+                        stats.evicted();
+                    stats.miss(blk.fileName());
+                    if (waitStart >= 0)
+                        stats.waited(System.nanoTime() - waitStart);
+                    p.assign(buff, blk, read);
+                    p.strategy.pinned(buff);
+                    buff.pin();
+                    if (granted)
+                        p.release();
+                } else
+                    snapshot = buff.snapshot(scratch.get());
+            }
+            if (waiter != null) {
+                granted = await(p, waiter, deadline, waitStart);
+                continue;
+            }
+            if (snapshot != null) {
+                // the buffer stays replaceable, so the next try can choose it again
+                try {
+                    if (buff.write(snapshot))
+                        stats.dirtyEvicted();
+                } catch (RuntimeException e) {
+                    if (granted)
+                        synchronized (p) {
+                            p.release();
+                        }
+                    throw e;
+                }
+                if (cleaner != null)
+                    cleaner.wake();
+                continue;
+            }
+            try {
+                buff.awaitWrite();
+                fm.read(blk, buff.contents());
+                read.complete(null);
+            } catch (RuntimeException e) {
+                synchronized (p) {
+                    p.inMemory.remove(blk);
+                }
+                read.completeExceptionally(e);
+                unpin(buff);
+                throw e;
+            }
             return buff;
-        } catch (InterruptedException e) {
-            throw new BufferAbortException();
         }
     }
 
+    /**
+     * Sleep until the waiter is granted a buffer,
+     * or give up when the deadline passes.
+     *
+     * @return true, since the waiter has been granted a buffer
+     */
+    private boolean await(Partition p, Waiter waiter, long deadline, long waitStart) {
+        boolean interrupted = false;
+        while (!waiter.granted && !interrupted) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                break;
+            LockSupport.parkNanos(this, remaining);
+            interrupted = Thread.interrupted();
+        }
+        synchronized (p) {
+            if (!waiter.granted) {
+                p.waiters.remove(waiter);
+                throw abort(waitStart);
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return true;
+    }
+
+    /**
+     * Reads up to the specified number of consecutive blocks of a file
+     * into unpinned buffers, so that later pins of those blocks
+     * find them in memory. Blocks that are already in a buffer are
+     * skipped; each run of missing blocks is read with a single
+     * {@link FileMgr#readRange} call, or, when the buffer manager
+     * has an asynchronous file manager, queued without waiting.
+     * Prefetching stops early when a block's partition has
+     * no unmodified unpinned buffer to replace, or has pins
+     * waiting for one.
+     *
+     * @param filename the name of the file
+     * @param firstblk the number of the first block to prefetch
+     * @param count    the number of blocks to prefetch
+     */
+    public void prefetch(String filename, int firstblk, int count) {
+        prefetch(filename, firstblk, count, false);
+    }
+
+    /**
+     * Reads the blocks into unpinned buffers, as {@link #prefetch(String, int, int)}
+     * does, except that when unused is true only buffers that have never
+     * held a block are used, and a block whose partition has none
+     * is skipped instead of ending the prefetch.
+     */
+    private void prefetch(String filename, int firstblk, int count, boolean unused) {
+        List<Buffer> run = new ArrayList<>();
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        int runstart = firstblk;
+        for (int blknum = firstblk; blknum < firstblk + count; blknum++) {
+            BlockId blk = new BlockId(filename, blknum);
+            Partition p = partition(blk);
+            Buffer buff;
+            CompletableFuture<Void> read = new CompletableFuture<>();
+            synchronized (p) {
+                if (p.inMemory.containsKey(blk))
+                    buff = null;
+                else {
+                    buff = p.canReplace() ? p.strategy.chooseVictim() : null;
+                    if (unused && (buff == null || buff.block() != null))
+                        buff = null;
+                    else if (buff == null || buff.isModified())
+                        break;
+                    else {
+                        if (buff.block() != null)
+                            stats.evicted();
+                        stats.miss(filename);
+                        p.assign(buff, blk, read);
+                    }
+                }
+            }
+            if (buff == null) {
+                loadRun(filename, runstart, run, reads);
+                run.clear();
+                reads.clear();
+                runstart = blknum + 1;
+            } else {
+                run.add(buff);
+                reads.add(read);
+            }
+        }
+        loadRun(filename, runstart, run, reads);
+    }
+
+    /**
+     * Writes back the modified buffers among the next victims
+     * of each partition. Each buffer is copied while the partition
+     * is locked, and the copy is written after the lock is released.
+     *
+     * @param target the number of next victims to look at in each partition
+     * @param copies the pages to copy the buffers into, at least target of them
+     * @return the number of buffers written
+     */
+    int clean(int target, Page[] copies) {
+        int written = 0;
+        List<Buffer> dirty = new ArrayList<>();
+        List<Buffer.Snapshot> snapshots = new ArrayList<>();
+        for (Partition p : partitions) {
+            synchronized (p) {
+                for (Buffer buff : p.strategy.nextVictims(target))
+                    if (buff.isModified()) {
+                        snapshots.add(buff.snapshot(copies[dirty.size()]));
+                        dirty.add(buff);
+                    }
+            }
+            for (int i = 0; i < dirty.size(); i++)
+                if (dirty.get(i).write(snapshots.get(i)))
+                    written++;
+            dirty.clear();
+            snapshots.clear();
+        }
+        stats.cleanerWrote(written);
+        return written;
+    }
+
     public void printStatus() {
         System.out.println("Buffers and their Contents:");
-        for (var e : inMemory.entrySet()) {
-            System.out.println("Buffer " + e.getValue().getId() + ": " + e.getKey().toString() + " " + (e.getValue().isPinned() ? "pinned" : "unpinned"));
+        for (Partition p : partitions)
+            synchronized (p) {
+                for (var e : p.inMemory.entrySet()) {
+                    System.out.println("Buffer " + e.getValue().getId() + ": " + e.getKey().toString() + " " + (e.getValue().isPinned() ? "pinned" : "unpinned"));
+                }
+            }
+
+        System.out.println("Unpinned Buffers:");
+        for (Partition p : partitions)
+            synchronized (p) {
+                System.out.println(p.strategy);
+            }
+        System.out.println("Statistics: " + stats);
+    }
+
+    private void flush(List<Buffer> buffs) {
+        if (afm == null) {
+            for (Buffer buff : buffs)
+                buff.flush();
+        } else {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (Buffer buff : buffs)
+                writes.add(buff.flush(afm));
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
         }
+        fm.syncAll();
+    }
 
-        System.out.print("Unpinned Buffers in LRU order: ");
-        for (Buffer buff : unpinned) {
-            System.out.print(buff.getId() + " ");
+    /**
+     * Read the blocks saved in the file into unused buffers.
+     */
+    private void load(File file) {
+        List<BlockId> blocks = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null && blocks.size() < bufferpool.length) {
+                int tab = line.lastIndexOf('\t');
+                if (tab < 0)
+                    continue;
+                String filename = line.substring(0, tab);
+                if (!FileMgr.isTemp(filename))
+                    blocks.add(new BlockId(filename, Integer.parseInt(line.substring(tab + 1))));
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | NumberFormatException e) {
+            // a damaged dump only means a cold start
+            System.err.println("buffer pool warm-up: cannot read " + file + ": " + e);
+            return;
+        }
+        blocks.sort(Comparator.comparing(BlockId::fileName).thenComparingInt(BlockId::number));
+        Map<String, Integer> lengths = new HashMap<>();
+        int i = 0;
+        while (i < blocks.size()) {
+            String filename = blocks.get(i).fileName();
+            int first = blocks.get(i).number();
+            int count = 1;
+            while (i + count < blocks.size() && blocks.get(i + count).fileName().equals(filename)
+                    && blocks.get(i + count).number() == first + count)
+                count++;
+            i += count;
+            int length = lengths.computeIfAbsent(filename, fm::length);
+            count = Math.min(count, length - first);
+            if (count > 0)
+                prefetch(filename, first, count, true);
         }
-        System.out.println();
     }
 
-    private boolean waitingTooLong(long starttime) {
-        return System.currentTimeMillis() - starttime > MAX_TIME;
+    private BufferAbortException abort(long waitStart) {
+        stats.aborted();
+        stats.waited(System.nanoTime() - waitStart);
+        return new BufferAbortException();
     }
 
     /**
-     * Tries to pin a buffer to the specified block.
-     * If there is already a buffer assigned to that block
-     * then that buffer is used;
-     * otherwise, an unpinned buffer from the pool is chosen.
-     * Returns a null value if there are no available buffers.
-     *
-     * @param blk a reference to a disk block
-     * @return the pinned buffer
+     * Reads consecutive blocks into the specified buffers, which
+     * have been assigned to them, and makes the buffers available
+     * as unpinned buffers once their reads are done.
      */
-    private Buffer tryToPin(BlockId blk) {
-        Buffer buff = findExistingBuffer(blk);
-        if (buff == null) {
-            buff = chooseUnpinnedBuffer();
-            if (buff == null)
-                return null;
-            inMemory.remove(buff.block());
-            buff.assignToBlock(blk);
+    private void loadRun(String filename, int firstblk, List<Buffer> run, List<CompletableFuture<Void>> reads) {
+        if (run.isEmpty())
+            return;
+        for (Buffer buff : run)
+            buff.awaitWrite();
+        if (afm == null) {
+            Page[] pages = new Page[run.size()];
+            for (int i = 0; i < pages.length; i++)
+                pages[i] = run.get(i).contents();
+            try {
+                fm.readRange(filename, firstblk, pages);
+            } catch (RuntimeException e) {
+                for (int i = 0; i < run.size(); i++)
+                    readFailed(run.get(i), reads.get(i), e);
+                throw e;
+            }
+            for (int i = 0; i < run.size(); i++) {
+                reads.get(i).complete(null);
+                makeAvailable(run.get(i));
+            }
+        } else {
+            for (int i = 0; i < run.size(); i++) {
+                Buffer buff = run.get(i);
+                CompletableFuture<Void> read = reads.get(i);
+                BlockId blk = new BlockId(filename, firstblk + i);
+                afm.read(blk, buff.contents()).whenComplete((v, e) -> {
+                    if (e != null)
+                        readFailed(buff, read, e);
+                    else {
+                        read.complete(null);
+                        makeAvailable(buff);
+                    }
+                });
+            }
         }
+    }
 
-        buff.pin();
-        inMemory.put(blk, buff);
-        return buff;
+    /**
+     * Give up a buffer whose read failed: the block is removed
+     * from the partition, so that a later pin reads it again,
+     * pins waiting for the read are woken with the failure,
+     * and the buffer is made replaceable unless it is pinned.
+     * A pin that got the buffer before the failure unpins it
+     * when its wait for the read fails.
+     */
+    private void readFailed(Buffer buff, CompletableFuture<Void> read, Throwable e) {
+        Partition p = partition(buff.block());
+        synchronized (p) {
+            p.inMemory.remove(buff.block(), buff);
+        }
+        read.completeExceptionally(e);
+        makeAvailable(buff);
     }
 
-    private Buffer findExistingBuffer(BlockId blk) {
-        return inMemory.get(blk);
+    /**
+     * Make a newly read buffer replaceable,
+     * unless it has been pinned meanwhile.
+     */
+    private void makeAvailable(Buffer buff) {
+        Partition p = partition(buff.block());
+        synchronized (p) {
+            if (!buff.isPinned()) {
+                p.strategy.unpinned(buff);
+                p.dispatch();
+            }
+        }
+    }
+
+    private static ReplacementStrategy newStrategy(String name, List<Buffer> buffers) {
+        switch (name) {
+            case "lru":
+                return new LRUStrategy(buffers);
+            case "clock":
+                return new ClockStrategy(buffers);
+            case "2q":
+                return new TwoQueueStrategy(buffers);
+            default:
+                throw new IllegalArgumentException("unknown replacement strategy " + name);
+        }
     }
 
-    private Buffer chooseUnpinnedBuffer() {
-        return unpinned.poll();
+    private Partition partition(BlockId blk) {
+        return partitions[Math.floorMod(blk.hashCode(), partitions.length)];
     }
 }
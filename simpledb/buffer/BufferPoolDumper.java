@@ -0,0 +1,51 @@
+package simpledb.buffer;
+
+import java.io.File;
+
+/**
+ * A background thread that saves the blocks resident in the buffer
+ * pool to a file every interval, so that a restart can read them back
+ * with {@link BufferMgr#warmUp(File)} instead of starting with a cold pool.
+ * A save that fails is retried at the next interval; the previous
+ * file stays in place, because each save replaces it atomically.
+ * The first failure of a run of failures is reported on System.err.
+ */
+class BufferPoolDumper extends Thread {
+   private final BufferMgr bm;
+   private final File file;
+   private final long interval;
+
+   /**
+    * @param bm the buffer manager whose blocks are saved
+    * @param file the file that the blocks are saved to
+    * @param interval the time between saves, in milliseconds
+    */
+   BufferPoolDumper(BufferMgr bm, File file, long interval) {
+      super("buffer pool dumper");
+      setDaemon(true);
+      this.bm = bm;
+      this.file = file;
+      this.interval = interval;
+   }
+
+   public void run() {
+      boolean failing = false;
+      while (true) {
+         try {
+            Thread.sleep(interval);
+         } catch (InterruptedException e) {
+            return;
+         }
+         try {
+            bm.dump(file);
+            failing = false;
+         } catch (RuntimeException e) {
+            // keep the previous dump, and try again later
+            if (!failing)
+               System.err.println(getName() + ": " + e.getMessage()
+                     + (e.getCause() == null ? "" : ": " + e.getCause()));
+            failing = true;
+         }
+      }
+   }
+}
@@ -0,0 +1,218 @@
+package simpledb.buffer;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+import simpledb.file.LatencyHistogram;
+
+/**
+ * The statistics of a buffer pool: the hits and misses of each file,
+ * the evictions, the writes done to make a victim clean, the pins that
+ * had to wait for an unpinned buffer and for how long, and the pins
+ * that gave up. The counters are {@link LongAdder}s, so that pins in
+ * different partitions do not contend on them.
+ * The statistics can be registered as a JMX MBean.
+ */
+public class BufferPoolStats implements BufferPoolStatsMBean {
+   private final BufferMgr bm;
+   private final int numbuffs;
+   private final DirtyPageTable dirtyPages;
+   private final Map<String, FileStats> files = new ConcurrentHashMap<>();
+   private final LongAdder evictions = new LongAdder();
+   private final LongAdder dirtyEvictions = new LongAdder();
+   private final LongAdder cleanerWrites = new LongAdder();
+   private final LongAdder aborts = new LongAdder();
+   private final LatencyHistogram pinWaits = new LatencyHistogram();
+
+   private static class FileStats {
+      final LongAdder hits = new LongAdder();
+      final LongAdder misses = new LongAdder();
+   }
+
+   BufferPoolStats(BufferMgr bm, int numbuffs, DirtyPageTable dirtyPages) {
+      this.bm = bm;
+      this.numbuffs = numbuffs;
+      this.dirtyPages = dirtyPages;
+   }
+
+   /**
+    * Register the statistics with the platform MBean server, under the
+    * name "simpledb:type=BufferPool,name=" followed by the specified name.
+    * Statistics already registered under that name are replaced.
+    * @param name the name of the buffer pool, such as its database directory
+    */
+   public void register(String name) {
+      try {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName oname = new ObjectName("simpledb:type=BufferPool,name=" + ObjectName.quote(name));
+         if (server.isRegistered(oname))
+            server.unregisterMBean(oname);
+         server.registerMBean(this, oname);
+      } catch (JMException e) {
+         throw new RuntimeException("cannot register the buffer pool statistics", e);
+      }
+   }
+
+   public int getBufferCount() {
+      return numbuffs;
+   }
+
+   public int getAvailableCount() {
+      return bm.available();
+   }
+
+   public int getDirtyCount() {
+      return dirtyPages.size();
+   }
+
+   public int getReservedCount() {
+      return bm.reserved();
+   }
+
+   public long getHits() {
+      long n = 0;
+      for (FileStats fs : files.values())
+         n += fs.hits.sum();
+      return n;
+   }
+
+   public long getMisses() {
+      long n = 0;
+      for (FileStats fs : files.values())
+         n += fs.misses.sum();
+      return n;
+   }
+
+   public double getHitRatio() {
+      long hits = getHits();
+      long total = hits + getMisses();
+      return total == 0 ? 0 : (double) hits / total;
+   }
+
+   /**
+    * Return the number of pins of blocks of the file
+    * that found the block in the pool.
+    */
+   public long hits(String filename) {
+      FileStats fs = files.get(filename);
+      return fs == null ? 0 : fs.hits.sum();
+   }
+
+   /**
+    * Return the number of pins and prefetches of blocks of
+    * the file that had to read the block.
+    */
+   public long misses(String filename) {
+      FileStats fs = files.get(filename);
+      return fs == null ? 0 : fs.misses.sum();
+   }
+
+   /**
+    * Return the names of the files whose blocks have been pinned.
+    */
+   public Set<String> files() {
+      return new TreeSet<>(files.keySet());
+   }
+
+   /**
+    * Return the number of blocks replaced by another block.
+    */
+   public long getEvictions() {
+      return evictions.sum();
+   }
+
+   /**
+    * Return the number of victims that a pin had
+    * to write before replacing them.
+    */
+   public long getDirtyEvictions() {
+      return dirtyEvictions.sum();
+   }
+
+   /**
+    * Return the number of buffers written by the background cleaner.
+    */
+   public long getCleanerWrites() {
+      return cleanerWrites.sum();
+   }
+
+   /**
+    * Return the number of pins that gave up waiting for
+    * an unpinned buffer, with a {@link BufferAbortException}.
+    */
+   public long getAborts() {
+      return aborts.sum();
+   }
+
+   /**
+    * Return the number of pins that waited for an unpinned buffer.
+    */
+   public long getPinWaits() {
+      return pinWaits.count();
+   }
+
+   public double getPinWaitMeanMicros() {
+      return pinWaits.meanMicros();
+   }
+
+   public long getPinWaitP99Micros() {
+      return pinWaits.percentileMicros(99);
+   }
+
+   /**
+    * Return the histogram of the times pins waited for an unpinned buffer.
+    */
+   public LatencyHistogram pinWaitTimes() {
+      return pinWaits;
+   }
+
+   public String getFileStats() {
+      StringBuilder sb = new StringBuilder();
+      for (String filename : files())
+         sb.append(filename).append(": ").append(hits(filename)).append(" hits, ")
+               .append(misses(filename)).append(" misses\n");
+      return sb.toString();
+   }
+
+   public String toString() {
+      return String.format("%d buffers, %d available, %d dirty, %d reserved; %d hits, %d misses (hit ratio %.3f); "
+            + "%d evictions (%d dirty), %d cleaner writes; %d aborts; pin waits: %s",
+            getBufferCount(), getAvailableCount(), getDirtyCount(), getReservedCount(), getHits(), getMisses(), getHitRatio(),
+            getEvictions(), getDirtyEvictions(), getCleanerWrites(), getAborts(), pinWaits);
+   }
+
+   void hit(String filename) {
+      fileStats(filename).hits.increment();
+   }
+
+   void miss(String filename) {
+      fileStats(filename).misses.increment();
+   }
+
+   void evicted() {
+      evictions.increment();
+   }
+
+   void dirtyEvicted() {
+      dirtyEvictions.increment();
+   }
+
+   void cleanerWrote(long n) {
+      cleanerWrites.add(n);
+   }
+
+   void aborted() {
+      aborts.increment();
+   }
+
+   void waited(long nanos) {
+      pinWaits.record(nanos);
+   }
+
+   private FileStats fileStats(String filename) {
+      FileStats fs = files.get(filename);
+      return fs != null ? fs : files.computeIfAbsent(filename, k -> new FileStats());
+   }
+}
@@ -0,0 +1,40 @@
+package simpledb.buffer;
+
+/**
+ * The management interface of {@link BufferPoolStats},
+ * through which JMX clients such as jconsole read the statistics.
+ */
+public interface BufferPoolStatsMBean {
+   public int getBufferCount();
+
+   public int getAvailableCount();
+
+   public int getDirtyCount();
+
+   public int getReservedCount();
+
+   public long getHits();
+
+   public long getMisses();
+
+   public double getHitRatio();
+
+   public long getEvictions();
+
+   public long getDirtyEvictions();
+
+   public long getCleanerWrites();
+
+   public long getAborts();
+
+   public long getPinWaits();
+
+   public double getPinWaitMeanMicros();
+
+   public long getPinWaitP99Micros();
+
+   /**
+    * Return the hits and misses of each file, one file per line.
+    */
+   public String getFileStats();
+}
@@ -0,0 +1,73 @@
+package simpledb.buffer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The admission control of a buffer pool. An operator that needs many
+ * buffers at once, such as a multibuffer product, reserves them before
+ * it starts, and plans with the number it was given. The reservations
+ * never add up to more than the reservable share of the pool, so two
+ * large operators cannot both count on the same buffers; an operator
+ * whose minimum cannot be reserved waits, behind any that are already
+ * waiting, until enough is released.
+ * <p>
+ * A reservation is a budget, not a set of buffers: the pins of
+ * its holder compete for unpinned buffers like any others.
+ * The share of the pool that is not reservable is left
+ * for ordinary pins, which pin few buffers at a time.
+ */
+class BufferReservations {
+   private final int capacity;
+   private int reserved = 0;
+   private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+   BufferReservations(int capacity) {
+      this.capacity = Math.max(1, capacity);
+   }
+
+   /**
+    * Reserve between min and max buffers, waiting until at least
+    * min can be reserved and every earlier request has been served.
+    * A minimum larger than the reservable share is reduced to it.
+    *
+    * @return the number of buffers reserved
+    * @throws BufferAbortException if min buffers cannot be reserved in time
+    */
+   synchronized int reserve(int min, int max, long timeoutMillis) {
+      min = Math.min(Math.max(min, 1), capacity);
+      max = Math.max(min, max);
+      Object ticket = new Object();
+      queue.add(ticket);
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      try {
+         while (queue.peek() != ticket || capacity - reserved < min) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+               throw new BufferAbortException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+         }
+      } catch (InterruptedException e) {
+         throw new BufferAbortException();
+      } finally {
+         queue.remove(ticket);
+         notifyAll(); // the next request may now be at the head
+      }
+      int n = Math.min(max, capacity - reserved);
+      reserved += n;
+      return n;
+   }
+
+   synchronized void release(int n) {
+      reserved -= n;
+      notifyAll();
+   }
+
+   synchronized int reserved() {
+      return reserved;
+   }
+
+   synchronized int unreserved() {
+      return capacity - reserved;
+   }
+}
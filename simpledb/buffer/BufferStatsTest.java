@@ -0,0 +1,35 @@
+package simpledb.buffer;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class BufferStatsTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferstatstest", 400, 3);
+      BufferMgr bm = db.bufferMgr();
+      BufferPoolStats stats = bm.stats();
+
+      Buffer a = bm.pin(new BlockId("a", 0));
+      bm.unpin(bm.pin(new BlockId("a", 0)));
+      bm.unpin(bm.pin(new BlockId("b", 0)));
+      bm.unpin(bm.pin(new BlockId("b", 1)));
+      a.setModified(1, -1);
+      bm.unpin(a);
+      for (int i=2; i<6; i++)
+         bm.unpin(bm.pin(new BlockId("b", i)));
+      System.out.println("file a: " + stats.hits("a") + " hits, " + stats.misses("a") + " misses (expected 1 hits, 1 misses)");
+      System.out.println("file b: " + stats.hits("b") + " hits, " + stats.misses("b") + " misses (expected 0 hits, 6 misses)");
+      System.out.printf("hit ratio: %.3f (expected 0.125)%n", stats.getHitRatio());
+      System.out.println("evictions: " + stats.getEvictions() + " (expected 4)");
+      System.out.println("dirty evictions: " + stats.getDirtyEvictions() + " (expected 1)");
+      System.out.println("dirty buffers: " + stats.getDirtyCount() + " (expected 0)");
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("simpledb:type=BufferPool,name=\"bufferstatstest\"");
+      System.out.println("misses through JMX: " + server.getAttribute(name, "Misses") + " (expected 7)");
+      System.out.print(server.getAttribute(name, "FileStats"));
+      System.out.println(stats);
+   }
+}
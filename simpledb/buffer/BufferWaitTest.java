@@ -0,0 +1,72 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class BufferWaitTest {
+   private static final int NUM_WAITERS = 8;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferwaittest", 400, 2);
+      BufferMgr bm = db.bufferMgr();
+      Buffer b0 = bm.pin(new BlockId("testfile", 0));
+      Buffer b1 = bm.pin(new BlockId("testfile", 1));
+
+      // waiters arrive in order, and each holds its buffer for a moment
+      List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+      List<Thread> threads = new ArrayList<>();
+      for (int i=0; i<NUM_WAITERS; i++) {
+         int id = i;
+         Thread t = new Thread(() -> {
+            Buffer buff = bm.pin(new BlockId("testfile", 10 + id));
+            order.add(id);
+            sleep(20);
+            bm.unpin(buff);
+         });
+         t.start();
+         threads.add(t);
+         sleep(20);
+      }
+      bm.unpin(b0);
+      for (Thread t : threads)
+         t.join();
+      System.out.println("order of the waiters: " + order + " (expected 0 to " + (NUM_WAITERS - 1) + " in order)");
+
+      // a waiter for a block that another pin reads does not need a buffer of its own
+      BlockId blk = new BlockId("testfile", 2);
+      b0 = bm.pin(new BlockId("testfile", 3));
+      Thread t = new Thread(() -> bm.unpin(bm.pin(blk)));
+      t.start();
+      sleep(50);
+      Buffer held = b1;
+      new Thread(() -> {
+         sleep(50);
+         bm.unpin(held);
+      }).start();
+      Buffer b2 = bm.pin(blk); // waits behind the thread, and gets the block it reads
+      t.join(1000);
+      System.out.println("waiter for the same block done: " + !t.isAlive() + " (expected true)");
+      System.out.println("pins that waited: " + bm.stats().getPinWaits() + " (expected " + (NUM_WAITERS + 2) + ")");
+
+      long saved = BufferMgr.MAX_TIME;
+      BufferMgr.MAX_TIME = 200;
+      long start = System.currentTimeMillis();
+      try {
+         bm.pin(new BlockId("testfile", 4));
+         System.out.println("no exception");
+      } catch (BufferAbortException e) {
+         System.out.println("aborted after about " + (System.currentTimeMillis() - start) / 100 * 100 + " ms (expected 200)");
+      }
+      BufferMgr.MAX_TIME = saved;
+      bm.unpin(b0);
+      bm.unpin(b2);
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+      }
+   }
+}
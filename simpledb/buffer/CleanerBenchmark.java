@@ -0,0 +1,65 @@
+package simpledb.buffer;
+
+import java.util.Random;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Modifies random blocks of a file much larger than the buffer pool,
+ * with and without the background cleaner, and reports how many
+ * of the writes were done by pins that found a modified victim.
+ * With the cleaner running, almost all of them are done in the
+ * background, between the pins.
+ */
+public class CleanerBenchmark {
+   private static final int NUM_BUFFERS = 256;
+   private static final int NUM_BLOCKS = 4096;
+   private static final int NUM_PINS = 20000;
+   private static final long WORK_NANOS = 20000; // the work done with each pinned block
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("cleanerbenchmark", 4096, 8);
+      FileMgr fm = db.fileMgr();
+      String filename = "testfile.tbl";
+      Page p = new Page(fm.blockSize());
+      for (int i=fm.length(filename); i<NUM_BLOCKS; i++)
+         fm.write(new BlockId(filename, i), p);
+
+      for (int round=0; round<2; round++) {
+         run(db, filename, 0);
+         run(db, filename, NUM_BUFFERS / 4);
+      }
+   }
+
+   private static void run(SimpleDB db, String filename, int target) {
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = new BufferMgr(fm, db.logMgr(), NUM_BUFFERS);
+      if (target > 0)
+         bm.startCleaner(target, 10);
+      Random rand = new Random(42);
+      int writesBefore = fm.getStatistics().blksWritten();
+      long pinNanos = 0;
+      long start = System.nanoTime();
+      for (int i=0; i<NUM_PINS; i++) {
+         long pinStart = System.nanoTime();
+         Buffer buff = bm.pin(new BlockId(filename, rand.nextInt(NUM_BLOCKS)));
+         pinNanos += System.nanoTime() - pinStart;
+         buff.contents().setInt(0, i);
+         buff.setModified(1, -1);
+         work();
+         bm.unpin(buff);
+      }
+      double secs = (System.nanoTime() - start) / 1e9;
+      long writes = fm.getStatistics().blksWritten() - writesBefore;
+      long background = bm.cleanerWrites();
+      System.out.printf("cleaner target %3d: %6d writes, %6d by pins, %6d by the cleaner; "
+            + "%.2fs total, %5.1f us per pin%n",
+            target, writes, writes - background, background, secs, pinNanos / 1e3 / NUM_PINS);
+   }
+
+   private static void work() {
+      long end = System.nanoTime() + WORK_NANOS;
+      while (System.nanoTime() < end)
+         Thread.onSpinWait();
+   }
+}
@@ -0,0 +1,105 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * The CLOCK approximation of LRU. The buffers sit in a circular
+ * array, each with a reference bit that is set when the buffer
+ * is used. To choose a victim, the clock hand sweeps the array,
+ * clearing reference bits, and stops at the first replaceable
+ * buffer whose bit is already clear. A pin only sets two flags,
+ * instead of moving the buffer within a list.
+ */
+public class ClockStrategy implements ReplacementStrategy {
+   private Buffer[] buffers;
+   private int[] slots; // the slot of each buffer, by buffer id
+   private boolean[] referenced, replaceable;
+   private int hand = 0;
+   private int available;
+
+   public ClockStrategy(List<Buffer> buffers) {
+      this.buffers = buffers.toArray(new Buffer[0]);
+      referenced = new boolean[this.buffers.length];
+      replaceable = new boolean[this.buffers.length];
+      int maxid = 0;
+      for (Buffer buff : buffers)
+         maxid = Math.max(maxid, buff.getId());
+      slots = new int[maxid + 1];
+      for (int i = 0; i < this.buffers.length; i++) {
+         slots[this.buffers[i].getId()] = i;
+         replaceable[i] = true;
+      }
+      available = this.buffers.length;
+   }
+
+   public void pinned(Buffer buff) {
+      int slot = slots[buff.getId()];
+      referenced[slot] = true;
+      setReplaceable(slot, false);
+   }
+
+   public void unpinned(Buffer buff) {
+      int slot = slots[buff.getId()];
+      referenced[slot] = true;
+      setReplaceable(slot, true);
+   }
+
+   public void assigned(Buffer buff, BlockId previous) {
+      int slot = slots[buff.getId()];
+      referenced[slot] = false;
+      setReplaceable(slot, false);
+      if (slot == hand)
+         hand = (hand + 1) % buffers.length;
+   }
+
+   public Buffer chooseVictim() {
+      if (available == 0)
+         return null;
+      // two sweeps clear every reference bit, so a victim is found
+      for (int i = 0; i < 2 * buffers.length; i++) {
+         if (replaceable[hand]) {
+            if (!referenced[hand])
+               return buffers[hand];
+            referenced[hand] = false;
+         }
+         hand = (hand + 1) % buffers.length;
+      }
+      return null;
+   }
+
+   /**
+    * The hand takes the unreferenced buffers ahead of it first,
+    * and the referenced ones on its next sweep.
+    */
+   public List<Buffer> nextVictims(int n) {
+      List<Buffer> victims = new ArrayList<>();
+      for (int sweep = 0; sweep < 2; sweep++)
+         for (int i = 0; i < buffers.length && victims.size() < n; i++) {
+            int slot = (hand + i) % buffers.length;
+            if (replaceable[slot] && referenced[slot] == (sweep == 1))
+               victims.add(buffers[slot]);
+         }
+      return victims;
+   }
+
+   public int available() {
+      return available;
+   }
+
+   private void setReplaceable(int slot, boolean b) {
+      if (replaceable[slot] != b)
+         available += b ? 1 : -1;
+      replaceable[slot] = b;
+   }
+
+   public String toString() {
+      StringBuilder sb = new StringBuilder("clock order:");
+      for (int i = 0; i < buffers.length; i++) {
+         int slot = (hand + i) % buffers.length;
+         if (replaceable[slot])
+            sb.append(" ").append(buffers[slot].getId()).append(referenced[slot] ? "*" : "");
+      }
+      return sb.toString();
+   }
+}
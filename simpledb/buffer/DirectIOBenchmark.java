@@ -0,0 +1,83 @@
+package simpledb.buffer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Loads a file into a large buffer pool, with and without direct I/O,
+ * and reports the memory used by the process and by the OS page cache.
+ * Without direct I/O the file is held both in the pool and in the
+ * page cache; with it, only in the pool.
+ */
+public class DirectIOBenchmark {
+   private static final int BLOCK_SIZE = 8192;
+   private static final int NUM_BUFFERS = 8192; // 64 MB
+   private static final int NUM_BLOCKS = 8192;
+
+   public static void main(String[] args) throws Exception {
+      run(false);
+      run(true);
+   }
+
+   private static void run(boolean direct) throws Exception {
+      FileMgr.DIRECT_IO = direct;
+      String dirname = direct ? "directiotest" : "bufferediotest";
+      deleteDirectory(new File(dirname));
+      long rssBefore = memInfo("/proc/self/status", "VmRSS:");
+      long cachedBefore = memInfo("/proc/meminfo", "Cached:");
+
+      SimpleDB db = new SimpleDB(dirname, BLOCK_SIZE, NUM_BUFFERS);
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = db.bufferMgr();
+      String filename = "testfile.tbl";
+      Page p = new PageArena(1, fm.blockSize()).page(0); // aligned for direct I/O
+      for (int i=0; i<NUM_BLOCKS; i++) {
+         p.setInt(0, i);
+         fm.write(new BlockId(filename, i), p);
+      }
+      long start = System.nanoTime();
+      int wrong = 0;
+      for (int i=0; i<NUM_BLOCKS; i++) {
+         Buffer buff = bm.pin(new BlockId(filename, i));
+         if (buff.contents().getInt(0) != i)
+            wrong++;
+         bm.unpin(buff);
+      }
+      double secs = (System.nanoTime() - start) / 1e9;
+
+      long rss = memInfo("/proc/self/status", "VmRSS:") - rssBefore;
+      long cached = memInfo("/proc/meminfo", "Cached:") - cachedBefore;
+      System.out.printf("direct I/O %s (requested %s): load %.2fs, %d wrong blocks, "
+            + "process grew %d MB, page cache grew %d MB%n",
+            fm.isDirect(filename), direct, secs, wrong, rss / 1024, cached / 1024);
+   }
+
+   /**
+    * Return the value, in KB, of the specified line of a /proc file,
+    * or 0 if it is not available.
+    */
+   private static long memInfo(String procfile, String key) {
+      try {
+         List<String> lines = Files.readAllLines(Path.of(procfile));
+         for (String line : lines)
+            if (line.startsWith(key))
+               return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+      } catch (Exception e) {
+         // not Linux
+      }
+      return 0;
+   }
+
+   private static void deleteDirectory(File dir) {
+      File[] files = dir.listFiles();
+      if (files == null)
+         return;
+      for (File f : files)
+         f.delete();
+      dir.delete();
+   }
+}
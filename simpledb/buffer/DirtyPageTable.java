@@ -0,0 +1,85 @@
+package simpledb.buffer;
+
+import java.util.*;
+
+/**
+ * The modified buffers of a buffer pool, indexed by the transaction
+ * that last modified them, together with the recLSN of each buffer:
+ * the lsn of the first logged modification since it was last written.
+ * The buffers keep the table up to date as they are modified and
+ * written, so that committing a transaction or taking a checkpoint
+ * looks only at the modified buffers instead of the whole pool.
+ */
+class DirtyPageTable {
+    private final Map<Integer, Set<Buffer>> byTx = new HashMap<>();
+    private final Map<Buffer, Long> recLsns = new HashMap<>();
+    private final Map<Buffer, Integer> owners = new HashMap<>();
+
+    /**
+     * Record that the buffer has been modified by the transaction.
+     *
+     * @param buff  the buffer
+     * @param txnum the modifying transaction
+     * @param lsn   the lsn of the modification's log record, or a negative
+     *              number if it was not logged
+     */
+    synchronized void modified(Buffer buff, int txnum, long lsn) {
+        Integer owner = owners.put(buff, txnum);
+        if (owner == null || owner != txnum) {
+            if (owner != null)
+                remove(owner, buff);
+            byTx.computeIfAbsent(txnum, k -> new HashSet<>()).add(buff);
+        }
+        if (lsn >= 0)
+            recLsns.putIfAbsent(buff, lsn);
+    }
+
+    /**
+     * Record that the buffer has been written to disk.
+     */
+    synchronized void cleaned(Buffer buff) {
+        Integer owner = owners.remove(buff);
+        if (owner != null)
+            remove(owner, buff);
+        recLsns.remove(buff);
+    }
+
+    /**
+     * Return the buffers last modified by the transaction.
+     */
+    synchronized List<Buffer> buffersOf(int txnum) {
+        Set<Buffer> buffs = byTx.get(txnum);
+        return buffs == null ? List.of() : new ArrayList<>(buffs);
+    }
+
+    /**
+     * Return all the modified buffers.
+     */
+    synchronized List<Buffer> buffers() {
+        return new ArrayList<>(owners.keySet());
+    }
+
+    /**
+     * Return the smallest recLSN of the modified buffers,
+     * or -1 if no modified buffer has a logged modification.
+     * Log records before it describe changes that are all on disk.
+     */
+    synchronized long minRecLsn() {
+        long min = -1;
+        for (long lsn : recLsns.values())
+            if (min < 0 || lsn < min)
+                min = lsn;
+        return min;
+    }
+
+    synchronized int size() {
+        return owners.size();
+    }
+
+    private void remove(int txnum, Buffer buff) {
+        Set<Buffer> buffs = byTx.get(txnum);
+        buffs.remove(buff);
+        if (buffs.isEmpty())
+            byTx.remove(txnum);
+    }
+}
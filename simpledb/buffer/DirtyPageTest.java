@@ -0,0 +1,54 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class DirtyPageTest {
+   private static final int BIG_POOL = 65536;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("dirtypagetest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = new BufferMgr(fm, db.logMgr(), 16);
+      String filename = "testfile";
+
+      Buffer[] buffs = new Buffer[5];
+      for (int i=0; i<5; i++) {
+         buffs[i] = bm.pin(new BlockId(filename, i));
+         buffs[i].contents().setInt(80, 100 + i);
+         buffs[i].setModified(i < 3 ? 1 : 2, 10 + i);
+      }
+      buffs[0].setModified(1, 20); // the recLSN is the first modification's
+      for (int i=1; i<5; i++)
+         bm.unpin(buffs[i]); // buffer 0 stays pinned
+      System.out.println("dirty buffers: " + bm.dirtyCount() + " (expected 5)");
+      System.out.println("min recLSN: " + bm.minRecLsn() + " (expected 10)");
+
+      bm.flushAll(1);
+      Page p = new Page(fm.blockSize());
+      fm.read(new BlockId(filename, 0), p);
+      System.out.println("pinned block 0 on disk: " + p.getInt(80) + " (expected 100)");
+      fm.read(new BlockId(filename, 3), p);
+      System.out.println("block 3 of tx 2 on disk: " + p.getInt(80) + " (expected 0)");
+      System.out.println("dirty buffers: " + bm.dirtyCount() + " (expected 2)");
+      System.out.println("min recLSN: " + bm.minRecLsn() + " (expected 13)");
+
+      // a buffer modified by another transaction changes hands
+      buffs[0].setModified(2, 30);
+      bm.flushAll(2);
+      System.out.println("dirty buffers after flushing tx 2: " + bm.dirtyCount() + " (expected 0)");
+      System.out.println("min recLSN: " + bm.minRecLsn() + " (expected -1)");
+      bm.unpin(buffs[0]);
+
+      // the cost of committing a transaction no longer depends on the pool size
+      BufferMgr big = new BufferMgr(fm, db.logMgr(), BIG_POOL);
+      Buffer buff = big.pin(new BlockId(filename, 0));
+      long start = System.nanoTime();
+      for (int i=0; i<1000; i++) {
+         buff.setModified(100 + i, -1);
+         big.flushAll(100 + i);
+      }
+      System.out.printf("flushAll with %d buffers: %.1f us%n", BIG_POOL, (System.nanoTime() - start) / 1e3 / 1000);
+      big.unpin(buff);
+   }
+}
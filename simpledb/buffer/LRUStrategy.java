@@ -0,0 +1,54 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * Replaces the least recently unpinned buffer.
+ * The replaceable buffers are kept in a list in the order
+ * they were unpinned; a pin removes a buffer from the list.
+ */
+public class LRUStrategy implements ReplacementStrategy {
+   private LinkedHashSet<Buffer> unpinned = new LinkedHashSet<>();
+
+   public LRUStrategy(List<Buffer> buffers) {
+      unpinned.addAll(buffers);
+   }
+
+   public void pinned(Buffer buff) {
+      unpinned.remove(buff);
+   }
+
+   public void unpinned(Buffer buff) {
+      unpinned.add(buff);
+   }
+
+   public void assigned(Buffer buff, BlockId previous) {
+      unpinned.remove(buff);
+   }
+
+   public Buffer chooseVictim() {
+      return unpinned.isEmpty() ? null : unpinned.iterator().next();
+   }
+
+   public List<Buffer> nextVictims(int n) {
+      List<Buffer> victims = new ArrayList<>();
+      for (Buffer buff : unpinned) {
+         if (victims.size() == n)
+            break;
+         victims.add(buff);
+      }
+      return victims;
+   }
+
+   public int available() {
+      return unpinned.size();
+   }
+
+   public String toString() {
+      StringBuilder sb = new StringBuilder("LRU order:");
+      for (Buffer buff : unpinned)
+         sb.append(" ").append(buff.getId());
+      return sb.toString();
+   }
+}
@@ -0,0 +1,58 @@
+package simpledb.buffer;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Measures pin/unpin throughput with an increasing number of threads,
+ * for a buffer pool with one partition and for a partitioned one.
+ * The "hits" workload fits in the pool; in the "misses" workload
+ * most pins read their block from disk.
+ */
+public class PinBenchmark {
+   private static final int NUM_BUFFERS = 1024;
+   private static final int NUM_BLOCKS = 8192;
+   private static final int PINS_PER_THREAD = 200000;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("pinbenchmark", 4096, 8);
+      FileMgr fm = db.fileMgr();
+      String filename = "testfile.tbl";
+      Page p = new Page(fm.blockSize());
+      for (int i=fm.length(filename); i<NUM_BLOCKS; i++)
+         fm.write(new BlockId(filename, i), p);
+
+      int cores = Runtime.getRuntime().availableProcessors();
+      System.out.println(cores + " cores");
+      for (int partitions : new int[] {1, BufferMgr.PARTITIONS}) {
+         BufferMgr.PARTITIONS = partitions;
+         BufferMgr bm = new BufferMgr(fm, db.logMgr(), NUM_BUFFERS);
+         for (int threads=1; threads<=2*cores; threads*=2) {
+            double hits = run(bm, filename, threads, NUM_BUFFERS / 2);
+            double misses = run(bm, filename, threads, NUM_BLOCKS);
+            System.out.printf("%2d partitions, %2d threads: %,12.0f pins/sec (hits) %,12.0f pins/sec (misses)%n",
+                  partitions, threads, hits, misses);
+         }
+      }
+   }
+
+   private static double run(BufferMgr bm, String filename, int numthreads, int workingset) throws Exception {
+      List<Thread> threads = new ArrayList<>();
+      for (int t=0; t<numthreads; t++)
+         threads.add(new Thread(() -> {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            for (int i=0; i<PINS_PER_THREAD; i++) {
+               Buffer buff = bm.pin(new BlockId(filename, rand.nextInt(workingset)));
+               bm.unpin(buff);
+            }
+         }));
+      long start = System.nanoTime();
+      for (Thread t : threads)
+         t.start();
+      for (Thread t : threads)
+         t.join();
+      return (double) numthreads * PINS_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+   }
+}
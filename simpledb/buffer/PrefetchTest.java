@@ -0,0 +1,38 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class PrefetchTest {
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("prefetchtest", 400, 20);
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = db.bufferMgr();
+
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<16; i++) {
+         p.setInt(0, i);
+         fm.write(new BlockId("testfile", i), p);
+      }
+
+      Buffer buff5 = bm.pin(new BlockId("testfile", 5)); // already in memory
+      int before = fm.getStatistics().blksRead();
+      bm.prefetch("testfile", 0, 16);
+      int prefetched = fm.getStatistics().blksRead() - before;
+      System.out.println("Blocks read by prefetch: " + prefetched + " (expected 15)");
+      System.out.println("Available buffers: " + bm.available() + " (expected 19)");
+
+      before = fm.getStatistics().blksRead();
+      int wrong = 0;
+      for (int i=0; i<16; i++) {
+         Buffer buff = bm.pin(new BlockId("testfile", i));
+         if (buff.contents().getInt(0) != i)
+            wrong++;
+         bm.unpin(buff);
+      }
+      int misses = fm.getStatistics().blksRead() - before;
+      System.out.println("Blocks read by pins: " + misses + " (expected 0)");
+      System.out.println("Blocks with wrong contents: " + wrong);
+      bm.unpin(buff5);
+   }
+}
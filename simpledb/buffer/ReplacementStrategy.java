@@ -0,0 +1,64 @@
+package simpledb.buffer;
+
+import java.util.List;
+import simpledb.file.BlockId;
+
+/**
+ * The policy that chooses which unpinned buffer of a
+ * buffer pool partition is replaced when a block must be read.
+ * Each partition has its own strategy, which sees only that
+ * partition's buffers. The buffer manager calls every method
+ * while holding the partition's lock.
+ * <p>
+ * A buffer is replaceable once it is unpinned, and stops being
+ * replaceable when it is pinned or assigned to another block.
+ */
+public interface ReplacementStrategy {
+   /**
+    * Record that the buffer has been pinned. This is called
+    * for every pin, including the one that caused the block
+    * to be read, but not for a prefetch.
+    * @param buff the buffer
+    */
+   public void pinned(Buffer buff);
+
+   /**
+    * Record that the buffer's pin count has gone to zero,
+    * or that a block prefetched into it has been read.
+    * @param buff the buffer
+    */
+   public void unpinned(Buffer buff);
+
+   /**
+    * Record that the buffer, previously chosen by
+    * {@link #chooseVictim()}, has been assigned to a new block.
+    * @param buff the buffer
+    * @param previous the block it held before, or null
+    */
+   public void assigned(Buffer buff, BlockId previous);
+
+   /**
+    * Return the replaceable buffer that should be replaced next,
+    * or null if there is none. The buffer stays replaceable,
+    * so that a modified buffer can be written back and then
+    * chosen again.
+    * @return the buffer to replace
+    */
+   public Buffer chooseVictim();
+
+   /**
+    * Return up to n replaceable buffers, in the order in which
+    * they are expected to be replaced, without changing the state
+    * of the strategy. The page cleaner writes back the modified
+    * ones, so that the next victims are clean.
+    * @param n the number of buffers
+    * @return the next victims
+    */
+   public List<Buffer> nextVictims(int n);
+
+   /**
+    * Return the number of replaceable buffers.
+    * @return the number of replaceable buffers
+    */
+   public int available();
+}
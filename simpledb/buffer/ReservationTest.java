@@ -0,0 +1,92 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.multibuffer.MultibufferProductPlan;
+import simpledb.plan.Plan;
+import simpledb.query.Scan;
+import simpledb.record.Schema;
+import simpledb.tx.Transaction;
+
+public class ReservationTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("reservationtest", 400, 40);
+      BufferMgr bm = db.bufferMgr();
+      System.out.println("reservable: " + bm.unreserved() + " (expected 30)");
+
+      int first = bm.reserve(10, 25);
+      System.out.println("first reservation: " + first + " (expected 25)");
+
+      // the second request waits for its minimum, and the third,
+      // whose minimum is free, waits behind it and gets what is left
+      int[] got = new int[2];
+      Thread second = new Thread(() -> got[0] = bm.reserve(10, 20));
+      Thread third = new Thread(() -> got[1] = bm.reserve(2, 30));
+      second.start();
+      Thread.sleep(50);
+      third.start();
+      Thread.sleep(50);
+      System.out.println("before the release: second got " + got[0] + ", third got " + got[1] + " (expected 0 and 0)");
+      bm.release(first);
+      second.join();
+      third.join();
+      System.out.println("after the release: second got " + got[0] + ", third got " + got[1] + " (expected 20 and 10)");
+      System.out.println("reserved: " + bm.reserved() + " (expected 30)");
+
+      long saved = BufferMgr.MAX_TIME;
+      BufferMgr.MAX_TIME = 100;
+      try {
+         bm.reserve(10, 10);
+         System.out.println("no exception");
+      } catch (BufferAbortException e) {
+         System.out.println("a request for 10 more buffers timed out (expected)");
+      }
+      BufferMgr.MAX_TIME = saved;
+      bm.release(30);
+      System.out.println("oversized minimum: " + bm.reserve(100, 100) + " (expected 30, all that is reservable)");
+
+      // a product of 10 and 20 blocks is estimated with the 3 buffers
+      // its scan waits for while nothing is reservable, and in two
+      // chunks of the 15 buffers it would reserve once the
+      // reservation is released
+      Transaction tx = db.newTx();
+      Plan product = new MultibufferProductPlan(tx, new FixedPlan(10, 500), new FixedPlan(20, 1000));
+      System.out.println("blocks accessed, nothing reservable: " + product.blocksAccessed() + " (expected 220)");
+      bm.release(30);
+      System.out.println("blocks accessed, 30 reservable: " + product.blocksAccessed() + " (expected 40)");
+      tx.commit();
+   }
+
+   /**
+    * A plan with a fixed size and an int field, which cannot be opened.
+    */
+   private static class FixedPlan implements Plan {
+      private final int blocks, records;
+      private final Schema schema = new Schema();
+
+      FixedPlan(int blocks, int records) {
+         this.blocks = blocks;
+         this.records = records;
+         schema.addIntField("a");
+      }
+
+      public Scan open() {
+         throw new UnsupportedOperationException();
+      }
+
+      public int blocksAccessed() {
+         return blocks;
+      }
+
+      public int recordsOutput() {
+         return records;
+      }
+
+      public int distinctValues(String fldname) {
+         return records;
+      }
+
+      public Schema schema() {
+         return schema;
+      }
+   }
+}
@@ -0,0 +1,42 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Repeatedly uses a small set of hot blocks (like the index pages
+ * used by two lookups) between full scans of a file larger than
+ * the buffer pool, and counts how often the hot blocks were read.
+ */
+public class ScanResistanceTest {
+   private static final int NUM_BUFFERS = 32;
+   private static final int HOT_BLOCKS = 6;
+   private static final int SCAN_BLOCKS = 200;
+   private static final int ROUNDS = 20;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("scanresistancetest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<SCAN_BLOCKS; i++)
+         fm.write(new BlockId("scan.tbl", i), p);
+      for (int i=0; i<HOT_BLOCKS; i++)
+         fm.write(new BlockId("hot.idx", i), p);
+
+      for (String strategy : new String[] {"lru", "clock", "2q"}) {
+         BufferMgr bm = new BufferMgr(fm, db.logMgr(), NUM_BUFFERS, null, strategy);
+         int hotReads = 0;
+         for (int round=0; round<ROUNDS; round++) {
+            for (int lookup=0; lookup<2; lookup++)
+               for (int i=0; i<HOT_BLOCKS; i++) {
+                  int before = fm.getStatistics().blksRead();
+                  bm.unpin(bm.pin(new BlockId("hot.idx", i)));
+                  hotReads += fm.getStatistics().blksRead() - before;
+               }
+            for (int i=0; i<SCAN_BLOCKS; i++)
+               bm.unpin(bm.pin(new BlockId("scan.tbl", i)));
+         }
+         System.out.println(strategy + ": hot blocks read " + hotReads + " times in " + ROUNDS + " rounds");
+      }
+   }
+}
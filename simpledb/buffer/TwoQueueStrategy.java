@@ -0,0 +1,131 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * The scan-resistant 2Q replacement policy.
+ * A block read into a buffer first joins the A1in queue, which is
+ * kept in FIFO order. A block moves to the Am queue, which is kept
+ * in LRU order, when it is pinned a second time while in A1in,
+ * or when it is read again soon after it was replaced from A1in
+ * (that is, while its id is still in the A1out history).
+ * Victims come from A1in while it holds more than its share of
+ * the buffers, so a long scan, whose blocks are each read once,
+ * cycles through A1in and does not replace the frequently used
+ * blocks in Am, such as index pages.
+ */
+public class TwoQueueStrategy implements ReplacementStrategy {
+   /**
+    * The share of the buffers that A1in may hold
+    * before victims are taken from it first.
+    */
+   public static double IN_SHARE = 0.25;
+
+   /**
+    * The number of replaced A1in blocks remembered in A1out,
+    * as a share of the number of buffers.
+    */
+   public static double OUT_SHARE = 0.5;
+
+   private LinkedHashSet<Buffer> free = new LinkedHashSet<>();
+   private LinkedHashSet<Buffer> a1in = new LinkedHashSet<>(); // FIFO
+   private LinkedHashSet<Buffer> am = new LinkedHashSet<>();   // LRU
+   private LinkedHashSet<BlockId> a1out = new LinkedHashSet<>();
+   private Set<Buffer> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+   private Set<Buffer> referenced = Collections.newSetFromMap(new IdentityHashMap<>());
+   private int maxIn, maxOut;
+
+   public TwoQueueStrategy(List<Buffer> buffers) {
+      free.addAll(buffers);
+      maxIn = Math.max(1, (int) (buffers.size() * IN_SHARE));
+      maxOut = Math.max(1, (int) (buffers.size() * OUT_SHARE));
+   }
+
+   public void pinned(Buffer buff) {
+      inUse.add(buff);
+      if (!referenced.add(buff) && a1in.remove(buff))
+         am.add(buff);
+   }
+
+   public void unpinned(Buffer buff) {
+      inUse.remove(buff);
+      if (am.remove(buff))
+         am.add(buff); // most recently used
+   }
+
+   public void assigned(Buffer buff, BlockId previous) {
+      inUse.add(buff);
+      referenced.remove(buff);
+      free.remove(buff);
+      if (a1in.remove(buff) && previous != null) {
+         a1out.add(previous);
+         if (a1out.size() > maxOut)
+            a1out.remove(a1out.iterator().next());
+      }
+      am.remove(buff);
+      if (a1out.remove(buff.block()))
+         am.add(buff);
+      else
+         a1in.add(buff);
+   }
+
+   public Buffer chooseVictim() {
+      for (Buffer buff : free)
+         if (!inUse.contains(buff))
+            return buff;
+      Buffer buff = null;
+      if (a1in.size() > maxIn)
+         buff = oldestReplaceable(a1in);
+      if (buff == null)
+         buff = oldestReplaceable(am);
+      if (buff == null)
+         buff = oldestReplaceable(a1in);
+      return buff;
+   }
+
+   public List<Buffer> nextVictims(int n) {
+      List<Buffer> victims = new ArrayList<>();
+      addReplaceable(free, victims, n);
+      addReplaceable(a1in, victims, Math.min(n, victims.size() + a1in.size() - maxIn));
+      addReplaceable(am, victims, n);
+      addReplaceable(a1in, victims, n);
+      return victims;
+   }
+
+   public int available() {
+      return free.size() + a1in.size() + am.size() - inUse.size();
+   }
+
+   private Buffer oldestReplaceable(LinkedHashSet<Buffer> queue) {
+      for (Buffer buff : queue)
+         if (!inUse.contains(buff))
+            return buff;
+      return null;
+   }
+
+   private void addReplaceable(LinkedHashSet<Buffer> queue, List<Buffer> victims, int n) {
+      for (Buffer buff : queue) {
+         if (victims.size() >= n)
+            return;
+         if (!inUse.contains(buff) && !victims.contains(buff))
+            victims.add(buff);
+      }
+   }
+
+   public String toString() {
+      StringBuilder sb = new StringBuilder("free:");
+      for (Buffer buff : free)
+         if (!inUse.contains(buff))
+            sb.append(" ").append(buff.getId());
+      sb.append("; A1in:");
+      for (Buffer buff : a1in)
+         if (!inUse.contains(buff))
+            sb.append(" ").append(buff.getId());
+      sb.append("; Am:");
+      for (Buffer buff : am)
+         if (!inUse.contains(buff))
+            sb.append(" ").append(buff.getId());
+      return sb.toString();
+   }
+}
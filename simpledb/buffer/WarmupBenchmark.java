@@ -0,0 +1,93 @@
+package simpledb.buffer;
+
+import java.io.File;
+import java.util.Random;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Runs a skewed workload until the pool is warm, saves the resident
+ * blocks, and then restarts twice: once with a cold pool, and once
+ * reading the saved blocks back with {@link BufferMgr#warmUp(File)}
+ * while the workload runs. For each restart it reports the p99 pin
+ * latency of successive windows of pins, and the time until the p99
+ * first comes within twice the p99 of the warm pool.
+ * The file is read with direct I/O, so that the OS page
+ * cache does not hide the cost of a cold pool.
+ */
+public class WarmupBenchmark {
+   private static final int NUM_BUFFERS = 2048;
+   private static final int NUM_BLOCKS = 32768;
+   private static final double HOT_SHARE = 0.95; // the share of pins that go to the hot blocks
+   private static final int WINDOW = 1000;
+   private static final int NUM_WINDOWS = 40;
+
+   public static void main(String[] args) throws Exception {
+      FileMgr.DIRECT_IO = true;
+      String dirname = "warmupbenchmark";
+      String filename = "testfile.tbl";
+      File dumpfile = new File(dirname, "buffers.dump");
+      SimpleDB db = new SimpleDB(dirname, 4096, NUM_BUFFERS);
+      FileMgr fm = db.fileMgr();
+      Page p = new PageArena(1, fm.blockSize()).page(0); // aligned for direct I/O
+      for (int i=fm.length(filename); i<NUM_BLOCKS; i++)
+         fm.write(new BlockId(filename, i), p);
+
+      // the hot blocks are scattered over the file, and almost fill the pool
+      Random rand = new Random(42);
+      int[] hot = new int[NUM_BUFFERS * 3 / 4];
+      for (int i=0; i<hot.length; i++)
+         hot[i] = rand.nextInt(NUM_BLOCKS);
+
+      BufferMgr bm = db.bufferMgr();
+      for (int i=0; i<20; i++)
+         window(bm, filename, hot, rand);
+      long steady = 0;
+      for (int i=0; i<10; i++)
+         steady = Math.max(steady, window(bm, filename, hot, rand));
+      bm.dump(dumpfile);
+      System.out.println("warm pool: p99 " + steady + " us; saved " + bm.residentBlocks().size() + " blocks");
+
+      run("cold restart", new SimpleDB(dirname, 4096, NUM_BUFFERS).bufferMgr(), null, filename, hot, steady);
+      run("warm-up restart", new SimpleDB(dirname, 4096, NUM_BUFFERS).bufferMgr(), dumpfile, filename, hot, steady);
+   }
+
+   private static void run(String name, BufferMgr bm, File dumpfile, String filename, int[] hot, long steady)
+         throws Exception {
+      Random rand = new Random(7);
+      long start = System.nanoTime();
+      Thread warmup = dumpfile == null ? null : bm.warmUp(dumpfile);
+      StringBuilder p99s = new StringBuilder();
+      long steadyMillis = -1;
+      for (int i=0; i<NUM_WINDOWS; i++) {
+         long p99 = window(bm, filename, hot, rand);
+         if (i < 20)
+            p99s.append(" ").append(p99);
+         if (steadyMillis < 0 && p99 <= 2 * steady)
+            steadyMillis = (System.nanoTime() - start) / 1000000;
+      }
+      long warmupMillis = -1;
+      if (warmup != null) {
+         warmup.join();
+         warmupMillis = (System.nanoTime() - start) / 1000000;
+      }
+      System.out.println(name + ": p99 of the first windows (us):" + p99s);
+      System.out.println(name + ": steady after " + (steadyMillis < 0 ? "more than the run" : steadyMillis + " ms")
+            + (warmup == null ? "" : "; warm-up done after " + warmupMillis + " ms"));
+   }
+
+   /**
+    * Pin and unpin WINDOW blocks, and return the p99 of the pins in microseconds.
+    */
+   private static long window(BufferMgr bm, String filename, int[] hot, Random rand) {
+      LatencyHistogram h = new LatencyHistogram();
+      for (int i=0; i<WINDOW; i++) {
+         int blknum = rand.nextDouble() < HOT_SHARE ? hot[rand.nextInt(hot.length)] : rand.nextInt(NUM_BLOCKS);
+         long pinStart = System.nanoTime();
+         Buffer buff = bm.pin(new BlockId(filename, blknum));
+         h.record(System.nanoTime() - pinStart);
+         bm.unpin(buff);
+      }
+      return h.percentileMicros(99);
+   }
+}
@@ -0,0 +1,59 @@
+package simpledb.buffer;
+
+import java.io.File;
+import java.util.List;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class WarmupTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("warmuptest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = db.bufferMgr();
+      File dumpfile = new File("warmuptest", "buffers.dump");
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<10; i++) {
+         p.setInt(0, i);
+         fm.write(new BlockId("testfile", i), p);
+      }
+
+      // blocks 6 and 2 are used last, and block 9 stays pinned
+      Buffer pinned = bm.pin(new BlockId("testfile", 9));
+      for (int i : new int[] {5, 1, 3, 7, 2, 6})
+         bm.unpin(bm.pin(new BlockId("testfile", i)));
+      List<BlockId> resident = bm.residentBlocks();
+      System.out.println("Resident blocks: " + resident);
+      System.out.println("(expected 9, 6, 2, 7, 3, 1, 5)");
+      bm.dump(dumpfile);
+      bm.unpin(pinned);
+
+      // a restarted pool reads the saved blocks back in
+      BufferMgr restarted = new BufferMgr(fm, db.logMgr(), 8);
+      int before = fm.getStatistics().blksRead();
+      restarted.warmUp(dumpfile).join();
+      System.out.println("Blocks read by the warm-up: " + (fm.getStatistics().blksRead() - before)
+            + " (expected " + resident.size() + ")");
+      before = fm.getStatistics().blksRead();
+      int wrong = 0;
+      for (BlockId blk : resident) {
+         Buffer buff = restarted.pin(blk);
+         if (blk.fileName().equals("testfile") && buff.contents().getInt(0) != blk.number())
+            wrong++;
+         restarted.unpin(buff);
+      }
+      System.out.println("Blocks read by pins: " + (fm.getStatistics().blksRead() - before) + " (expected 0)");
+      System.out.println("Blocks with wrong contents: " + wrong);
+
+      // a warm-up does not replace blocks that pins have read
+      BufferMgr busy = new BufferMgr(fm, db.logMgr(), 2);
+      busy.unpin(busy.pin(new BlockId("testfile", 0)));
+      busy.unpin(busy.pin(new BlockId("testfile", 4)));
+      busy.warmUp(dumpfile).join();
+      System.out.println("Resident after the warm-up: " + busy.residentBlocks() + " (expected blocks 4 and 0)");
+
+      // a missing dump means a cold start
+      BufferMgr cold = new BufferMgr(fm, db.logMgr(), 8);
+      cold.warmUp(new File("warmuptest", "nosuchfile")).join();
+      System.out.println("Resident after a missing dump: " + cold.residentBlocks().size() + " (expected 0)");
+   }
+}
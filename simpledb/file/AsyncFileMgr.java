@@ -0,0 +1,208 @@
+package simpledb.file;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An asynchronous front end to the file manager.
+ * Read and write requests are queued and return immediately
+ * with a future that completes when the I/O is done.
+ * A scheduler thread repeatedly takes every queued request,
+ * groups the requests by file, orders each group by block number,
+ * and coalesces runs of adjacent blocks having the same operation
+ * into a single {@link FileMgr#readRange} or {@link FileMgr#writeRange}.
+ * Each file's group is performed as one task of a pool of I/O threads.
+ * Requests queued at different times may be performed concurrently,
+ * so a caller must wait for a request on a block (or a page)
+ * to complete before issuing a conflicting one.
+ * <p>
+ * For each operation type, the time requests spend queued and
+ * the time spent doing the I/O are kept in separate histograms.
+ */
+public class AsyncFileMgr {
+    public enum Op {READ, WRITE}
+
+    private FileMgr fm;
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private ExecutorService iopool;
+    private Thread scheduler;
+    private Map<Op, LatencyHistogram> queueTimes = new EnumMap<>(Op.class);
+    private Map<Op, LatencyHistogram> deviceTimes = new EnumMap<>(Op.class);
+    private LongAdder requests = new LongAdder();
+    private LongAdder ioCalls = new LongAdder();
+
+    private static class Request {
+        final Op op;
+        final BlockId blk;
+        final Page page;
+        final long submitted = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(Op op, BlockId blk, Page page) {
+            this.op = op;
+            this.blk = blk;
+            this.page = page;
+        }
+    }
+
+    /**
+     * Create an asynchronous file manager that performs its I/O
+     * using the specified number of threads.
+     * @param fm the file manager
+     * @param numthreads the number of I/O threads
+     */
+    public AsyncFileMgr(FileMgr fm, int numthreads) {
+        this.fm = fm;
+        for (Op op : Op.values()) {
+            queueTimes.put(op, new LatencyHistogram());
+            deviceTimes.put(op, new LatencyHistogram());
+        }
+        iopool = Executors.newFixedThreadPool(numthreads, r -> {
+            Thread t = new Thread(r, "simpledb-io");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler = new Thread(this::schedule, "simpledb-io-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    /**
+     * Queue a read of the specified block into the page.
+     * The page must not be used until the returned future completes.
+     */
+    public CompletableFuture<Void> read(BlockId blk, Page p) {
+        return submit(new Request(Op.READ, blk, p));
+    }
+
+    /**
+     * Queue a write of the page to the specified block.
+     * The page must not be modified until the returned future completes.
+     */
+    public CompletableFuture<Void> write(BlockId blk, Page p) {
+        return submit(new Request(Op.WRITE, blk, p));
+    }
+
+    /**
+     * Return the histogram of the time that requests of the
+     * specified type wait in the queue before their I/O starts.
+     */
+    public LatencyHistogram queueTime(Op op) {
+        return queueTimes.get(op);
+    }
+
+    /**
+     * Return the histogram of the time taken by the I/O
+     * that served requests of the specified type.
+     */
+    public LatencyHistogram deviceTime(Op op) {
+        return deviceTimes.get(op);
+    }
+
+    /**
+     * Stop the scheduler and the I/O threads.
+     * Requests already handed to an I/O thread are completed;
+     * requests still in the queue are not.
+     */
+    public void shutdown() {
+        scheduler.interrupt();
+        iopool.shutdown();
+    }
+
+    /**
+     * Return the number of requests performed so far.
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * Return the number of file manager calls made to perform
+     * those requests (fewer than the requests when they coalesce).
+     */
+    public long ioCalls() {
+        return ioCalls.sum();
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("requests=").append(requests()).append(" ioCalls=").append(ioCalls()).append("\n");
+        for (Op op : Op.values())
+            sb.append(op).append(" queue: ").append(queueTime(op))
+              .append("\n").append(op).append(" device: ").append(deviceTime(op)).append("\n");
+        return sb.toString();
+    }
+
+    private CompletableFuture<Void> submit(Request req) {
+        queue.add(req);
+        return req.done;
+    }
+
+    private void schedule() {
+        try {
+            while (true) {
+                List<Request> batch = new ArrayList<>();
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                Map<String, List<Request>> byFile = new HashMap<>();
+                for (Request req : batch)
+                    byFile.computeIfAbsent(req.blk.fileName(), k -> new ArrayList<>()).add(req);
+                for (List<Request> reqs : byFile.values()) {
+                    reqs.sort(Comparator.comparingInt(r -> r.blk.number())); // stable
+                    iopool.execute(() -> perform(reqs));
+                }
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Perform the sorted requests of one file,
+     * coalescing runs of adjacent blocks having the same operation.
+     */
+    private void perform(List<Request> reqs) {
+        int start = 0;
+        while (start < reqs.size()) {
+            int end = start + 1;
+            while (end < reqs.size() && reqs.get(end).op == reqs.get(start).op
+                    && reqs.get(end).blk.number() == reqs.get(end - 1).blk.number() + 1)
+                end++;
+            performRun(reqs.subList(start, end));
+            start = end;
+        }
+    }
+
+    private void performRun(List<Request> run) {
+        Request first = run.get(0);
+        long begin = System.nanoTime();
+        try {
+            if (run.size() == 1 && first.op == Op.READ)
+                fm.read(first.blk, first.page);
+            else if (run.size() == 1)
+                fm.write(first.blk, first.page);
+            else {
+                Page[] pages = new Page[run.size()];
+                for (int i = 0; i < pages.length; i++)
+                    pages[i] = run.get(i).page;
+                if (first.op == Op.READ)
+                    fm.readRange(first.blk.fileName(), first.blk.number(), pages);
+                else
+                    fm.writeRange(first.blk.fileName(), first.blk.number(), pages);
+            }
+        } catch (RuntimeException e) {
+            for (Request req : run)
+                req.done.completeExceptionally(e);
+            return;
+        }
+        long finish = System.nanoTime();
+        ioCalls.increment();
+        requests.add(run.size());
+        for (Request req : run) {
+            queueTimes.get(req.op).record(begin - req.submitted);
+            deviceTimes.get(req.op).record(finish - begin);
+            req.done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package simpledb.file;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import simpledb.server.SimpleDB;
+
+public class AsyncFileTest {
+    public static void main(String[] args) {
+        SimpleDB db = new SimpleDB("asyncfiletest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        AsyncFileMgr afm = new AsyncFileMgr(fm, 2);
+        int n = 64;
+
+        // queue the writes in random order; they are performed in block order
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            order.add(i);
+        Collections.shuffle(order, new Random(1));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i : order) {
+            Page p = new Page(fm.blockSize());
+            p.setInt(0, i);
+            p.setString(Integer.BYTES, "block" + i);
+            futures.add(afm.write(new BlockId("testfile", i), p));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        Page[] pages = new Page[n];
+        futures.clear();
+        for (int i = 0; i < n; i++) {
+            pages[i] = new Page(fm.blockSize());
+            futures.add(afm.read(new BlockId("testfile", i), pages[i]));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        int wrong = 0;
+        for (int i = 0; i < n; i++)
+            if (pages[i].getInt(0) != i || !pages[i].getString(Integer.BYTES).equals("block" + i))
+                wrong++;
+        System.out.println("Blocks with wrong contents: " + wrong);
+        System.out.print(afm);
+        afm.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package simpledb.file;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class ChecksumTest {
+    private static final int NUM_BLOCKS = 2000;
+    private static final int BLOCK_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        FileMgr.CHECKSUMS = true;
+        File dir = new File("checksumtest");
+        FileMgr fm = new FileMgr(dir, BLOCK_SIZE);
+        String filename = "testfile.tbl";
+        System.out.println("usable block size: " + fm.usableBlockSize() + " (expected " + (BLOCK_SIZE - 4) + ")");
+
+        Page p = new Page(fm.blockSize());
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            p.setInt(0, i);
+            p.setString(Integer.BYTES, "block" + i);
+            fm.write(new BlockId(filename, i), p);
+        }
+        fm.append(filename); // a block of zeros is valid
+        fm.read(new BlockId(filename, NUM_BLOCKS), p);
+
+        // tear block 7 by changing a byte behind the file manager's back
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, filename), "rw")) {
+            raf.seek(7L * BLOCK_SIZE + 100);
+            raf.write(42);
+        }
+        try {
+            fm.read(new BlockId(filename, 7), p);
+            System.out.println("torn block 7 was not detected");
+        } catch (RuntimeException e) {
+            System.out.println("detected: " + e.getMessage());
+        }
+        p.setInt(0, 7);
+        p.setString(Integer.BYTES, "block7");
+        fm.write(new BlockId(filename, 7), p);
+        System.out.println(fm.getStatistics());
+
+        // compare the cost of reading with and without verification
+        FileMgr.CHECKSUMS = false;
+        FileMgr plain = new FileMgr(new File("checksumtest-plain"), BLOCK_SIZE);
+        for (int i = 0; i < NUM_BLOCKS; i++)
+            plain.write(new BlockId(filename, i), p);
+        for (int round = 0; round < 3; round++) {
+            long checked = timeReads(fm, filename);
+            long unchecked = timeReads(plain, filename);
+            System.out.printf("round %d: %.0f ns/block with checksums, %.0f ns/block without%n",
+                    round, (double) checked / NUM_BLOCKS, (double) unchecked / NUM_BLOCKS);
+        }
+    }
+
+    private static long timeReads(FileMgr fm, String filename) {
+        Page p = new Page(fm.blockSize());
+        long start = System.nanoTime();
+        for (int i = 0; i < NUM_BLOCKS; i++)
+            fm.read(new BlockId(filename, i), p);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,49 @@
+package simpledb.file;
+
+import simpledb.server.SimpleDB;
+
+public class ConcurrentFileTest {
+    private static final int THREADS = 8;
+    private static final int BLOCKS_PER_THREAD = 50;
+    private static FileMgr fm;
+
+    public static void main(String[] args) throws Exception {
+        SimpleDB db = new SimpleDB("concurrentfiletest", 400, 8);
+        fm = db.fileMgr();
+
+        // every thread appends to the same file and writes its own blocks
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            int id = i;
+            threads[i] = new Thread(() -> appendAndWrite(id));
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("file length: " + fm.length("testfile")
+                + " (expected " + THREADS * BLOCKS_PER_THREAD + ")");
+        int errors = 0;
+        Page p = new Page(fm.blockSize());
+        for (int blknum = 0; blknum < fm.length("testfile"); blknum++) {
+            fm.read(new BlockId("testfile", blknum), p);
+            if (p.getInt(0) != blknum)
+                errors++;
+        }
+        System.out.println("blocks with wrong contents: " + errors);
+        System.out.println(fm.getStatistics());
+        System.out.println("elapsed: " + elapsed / 1000000 + " ms");
+    }
+
+    private static void appendAndWrite(int id) {
+        Page p = new Page(fm.blockSize());
+        for (int i = 0; i < BLOCKS_PER_THREAD; i++) {
+            BlockId blk = fm.append("testfile");
+            p.setInt(0, blk.number());
+            p.setString(Integer.BYTES, "thread" + id);
+            fm.write(blk, p);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package simpledb.file;
+
+import java.io.File;
+
+public class ExtentTest {
+    public static void main(String[] args) {
+        File dir = new File("extenttest");
+        FileMgr fm = new FileMgr(dir, 400);
+        String filename = "testfile.tbl";
+
+        Page p = new Page(fm.blockSize());
+        for (int i = 0; i < 100; i++) {
+            BlockId blk = fm.append(filename);
+            if (i < 97) {
+                p.setInt(0, i + 1);
+                fm.write(blk, p);
+            }
+        }
+        System.out.println("file length: " + fm.length(filename) + " (expected 100)");
+        System.out.println("blocks on disk: " + new File(dir, filename).length() / fm.blockSize()
+                + " (expected " + (2 * FileMgr.EXTENT_BLOCKS + 1) + ", with the trailer)");
+        System.out.println(fm.getStatistics());
+
+        // the trailer is rewritten by the sync, not by each append
+        FileMgr before = new FileMgr(dir, 400);
+        System.out.println("file length before the sync: " + before.length(filename)
+                + " (expected " + (FileMgr.EXTENT_BLOCKS + 1) + ", as of the last extent)");
+        fm.sync(filename);
+
+        // the appended blocks that were never written are zeros, but the trailer still counts them
+        FileMgr fm2 = new FileMgr(dir, 400);
+        System.out.println("file length after reopening: " + fm2.length(filename) + " (expected 100)");
+        System.out.println("next append: " + fm2.append(filename) + " (expected block 100)");
+    }
+}
@@ -1,99 +1,801 @@
 package simpledb.file;
 
+import com.sun.nio.file.ExtendedOpenOption;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
 
+/**
+ * The file manager. Block I/O uses positional reads and writes
+ * on each file's channel, so there is no lock shared by all files:
+ * reads and writes of different blocks proceed in parallel,
+ * and only append/length are coordinated, per file,
+ * through the file's block counter.
+ * <p>
+ * Writes are not synchronous by default. The files written since
+ * their last sync are remembered, and the log and buffer managers
+ * force them with {@link #sync(String)} and {@link #syncAll()}
+ * only where the recovery protocol needs the data on disk,
+ * so that many block writes share one fsync.
+ * Temporary tables are never synced.
+ * <p>
+ * Optionally, reads of data and index files are served from
+ * memory-mapped segments of the file instead of a read call per block.
+ * <p>
+ * Optionally, each block of a data or index file ends with a CRC32C
+ * checksum of its contents, set on every write and verified on every read,
+ * so a torn or corrupt block is detected when it is read back.
+ * Blocks already in the buffer pool are not read, and so are not verified.
+ * <p>
+ * Optionally, data and index files bypass the OS page cache
+ * with direct I/O, so that blocks are not cached twice.
+ * <p>
+ * Files grow in extents of EXTENT_BLOCKS zeroed blocks, so most appends
+ * do no I/O. The length of a file is its high-water mark, the number
+ * of blocks appended or written; the zeroed blocks beyond it are
+ * not counted. Data and index files end with a trailer block that
+ * holds the high-water mark, written when an extent is allocated and
+ * rewritten when the file is synced, so a reopened file keeps every
+ * block that was appended before the sync, even one that is still
+ * all zeros.
+ */
 public class FileMgr {
+    /**
+     * When true, database files are opened so that every block
+     * write is synchronous (the old "rws" behavior).
+     * Temporary tables are never opened this way.
+     */
+    public static boolean SYNC_EVERY_WRITE = false;
+
+    /**
+     * When true, blocks of data and index files are read by copying
+     * them from a read-only mapping of the file. The log file
+     * (any file ending in ".log") and temporary tables are always read
+     * through the channel. Writes always go through the channel;
+     * the mapping shares the OS page cache, so it sees them.
+     */
+    public static boolean MAPPED_READS = false;
+
+    /**
+     * The number of blocks in each mapped segment of a file.
+     * A segment is mapped once the file has grown to cover it;
+     * blocks in the partial last segment are read through the channel.
+     */
+    public static int MAP_SEGMENT_BLOCKS = 1024;
+
+    /**
+     * When true, a new database stores a checksum in the last
+     * CHECKSUM_SIZE bytes of each block of its data and index files.
+     * Like the block sizes, the choice is saved in the database header.
+     * The log file and temporary tables are never checksummed.
+     */
+    public static boolean CHECKSUMS = false;
+
+    public static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    /**
+     * When true, data and index files are opened for direct I/O,
+     * bypassing the OS page cache, if the platform supports it and
+     * the block size is a multiple of PageArena.ALIGNMENT.
+     * Direct I/O needs aligned memory, which the pages of a
+     * {@link PageArena} (and so the buffer pool) have.
+     * Mapped reads are not used for files opened this way.
+     */
+    public static boolean DIRECT_IO = false;
+
+    /**
+     * The number of blocks by which a file grows when an append
+     * reaches the end of the space allocated to it.
+     */
+    public static int EXTENT_BLOCKS = 64;
+
+    private static final String HEADER_FILE = "simpledb.hdr";
+    private static final int HEADER_MAGIC = 0x53444248; // "SDBH"
+    private static final int TRAILER_MAGIC = 0x53444254; // "SDBT"
+
     private File dbDirectory;
     private int blocksize;
+    private int logblocksize;
+    private boolean checksums;
     private boolean isNew;
-    private Map<String, RandomAccessFile> openFiles = new HashMap<>();
-    private int blksRead = 0;
-    private int blksWritten = 0;
+    private Map<String, OpenFile> openFiles = new ConcurrentHashMap<>();
+    private AtomicInteger blksRead = new AtomicInteger();
+    private AtomicInteger blksWritten = new AtomicInteger();
+    private AtomicInteger syncs = new AtomicInteger();
+    private AtomicInteger mappedReads = new AtomicInteger();
+    private AtomicInteger checksumFailures = new AtomicInteger();
+
+    public static record FileMgrStatistics(int blksRead, int blksWritten, int syncs, int mappedReads,
+                                           int checksumFailures) {
+    }
+
+    /**
+     * An open database file: its channel, the number of
+     * blocks it holds (which is what append hands out next),
+     * and the number of blocks allocated on disk, which is larger
+     * when the last extent is not yet used up.
+     * Its writes are counted, and a sync records the count it forced,
+     * so a sync returns only once a force that began after
+     * the writes before it has finished.
+     * A data or index file also has the page of its trailer block,
+     * and remembers what the trailer on disk says and where it is.
+     */
+    private static class OpenFile {
+        private final FileChannel channel;
+        private final int blocksize;
+        private final AtomicInteger numBlocks;
+        private final AtomicInteger allocated;
+        private final boolean mapped;
+        private final boolean checksummed;
+        private final boolean direct;
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+        private final AtomicLong writes = new AtomicLong(); // the writes to sync
+        private final Object syncLock = new Object();
+        private volatile long synced; // the writes known to be on disk
+        private final ByteBuffer trailer; // null if the file has no trailer
+        private volatile int trailerMark; // the high-water mark in the trailer
+        private volatile int trailerBlock; // the block holding the trailer
 
-    public static record FileMgrStatistics(int blksRead, int blksWritten) {
+        OpenFile(FileChannel channel, int blocksize, int numBlocks, int allocated, boolean mapped,
+                 boolean checksummed, boolean direct, ByteBuffer trailer) {
+            this.channel = channel;
+            this.blocksize = blocksize;
+            this.numBlocks = new AtomicInteger(numBlocks);
+            this.allocated = new AtomicInteger(allocated);
+            this.mapped = mapped;
+            this.checksummed = checksummed;
+            this.direct = direct;
+            this.trailer = trailer;
+            this.trailerMark = numBlocks;
+            this.trailerBlock = allocated;
+        }
+
+        /**
+         * Return the mapped segment having the specified number,
+         * mapping it if the file now covers it.
+         * Returns null if the file does not yet cover the whole segment.
+         */
+        MappedByteBuffer segment(int segnum, int segsize) throws IOException {
+            MappedByteBuffer[] segs = segments;
+            if (segnum < segs.length && segs[segnum] != null)
+                return segs[segnum];
+            synchronized (this) {
+                segs = segments;
+                if (segnum < segs.length && segs[segnum] != null)
+                    return segs[segnum];
+                long start = (long) segnum * segsize;
+                if (start + segsize > channel.size())
+                    return null;
+                segs = Arrays.copyOf(segs, Math.max(segs.length, segnum + 1));
+                segs[segnum] = channel.map(FileChannel.MapMode.READ_ONLY, start, segsize);
+                segments = segs;
+                return segs[segnum];
+            }
+        }
     }
 
     public FileMgr(File dbDirectory, int blocksize) {
+        this(dbDirectory, blocksize, blocksize);
+    }
+
+    /**
+     * Create a file manager whose log files (any file ending in ".log")
+     * use a different block size than the other files.
+     * The block sizes are chosen when the database is created,
+     * and are saved in its header file (along with the setting of CHECKSUMS);
+     * when an existing database is opened, the sizes in its header
+     * are used instead of the arguments.
+     *
+     * @param dbDirectory the database directory
+     * @param blocksize the block size of data and index files
+     * @param logblocksize the block size of log files
+     */
+    public FileMgr(File dbDirectory, int blocksize, int logblocksize) {
         this.dbDirectory = dbDirectory;
         this.blocksize = blocksize;
+        this.logblocksize = logblocksize;
+        this.checksums = CHECKSUMS;
         isNew = !dbDirectory.exists();
 
         // create the directory if the database is new
         if (isNew)
             dbDirectory.mkdirs();
 
+        File header = new File(dbDirectory, HEADER_FILE);
+        if (header.exists())
+            readHeader(header);
+        else
+            writeHeader(header);
+
         // remove any leftover temporary tables
         for (String filename : dbDirectory.list())
-            if (filename.startsWith("temp"))
+            if (isTemp(filename))
                 new File(dbDirectory, filename).delete();
     }
 
-    public synchronized void read(BlockId blk, Page p) {
+    public void read(BlockId blk, Page p) {
         try {
-            RandomAccessFile f = getFile(blk.fileName());
-            f.seek(blk.number() * blocksize);
-            f.getChannel().read(p.contents());
-            blksRead++;
+            OpenFile f = getFile(blk.fileName());
+            if (!f.mapped || !readMapped(f, blk, p))
+                readFully(f.channel, p.contents(), (long) blk.number() * f.blocksize);
+            if (f.checksummed)
+                verify(blk, p.contents());
+            blksRead.incrementAndGet();
         } catch (IOException e) {
             throw new RuntimeException("cannot read block " + blk);
         }
     }
 
-    public synchronized void write(BlockId blk, Page p) {
+    /**
+     * Read a range of consecutive blocks of a file, starting at
+     * the specified block, into the specified pages
+     * (one page per block). The blocks are read with a single
+     * scattering read, except that blocks of mapped segments
+     * are copied from the mapping.
+     * @param filename the name of the file
+     * @param firstblk the number of the first block to read
+     * @param pages the pages to read into
+     */
+    public void readRange(String filename, int firstblk, Page[] pages) {
+        try {
+            OpenFile f = getFile(filename);
+            int start = 0;
+            if (f.mapped)
+                while (start < pages.length && readMapped(f, new BlockId(filename, firstblk + start), pages[start]))
+                    start++;
+            if (start < pages.length) {
+                ByteBuffer[] bufs = new ByteBuffer[pages.length - start];
+                for (int i = 0; i < bufs.length; i++)
+                    bufs[i] = pages[start + i].contents();
+                readFully(f, bufs, (long) (firstblk + start) * f.blocksize);
+            }
+            if (f.checksummed)
+                for (int i = 0; i < pages.length; i++)
+                    verify(new BlockId(filename, firstblk + i), pages[i].contents());
+            blksRead.addAndGet(pages.length);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read blocks " + firstblk + "-"
+                    + (firstblk + pages.length - 1) + " of " + filename);
+        }
+    }
+
+    public void write(BlockId blk, Page p) {
         try {
-            RandomAccessFile f = getFile(blk.fileName());
-            f.seek(blk.number() * blocksize);
-            f.getChannel().write(p.contents());
-            blksWritten++;
+            OpenFile f = getFile(blk.fileName());
+            if (f.checksummed)
+                setChecksum(p.contents());
+            writeFully(f.channel, p.contents(), (long) blk.number() * f.blocksize);
+            f.numBlocks.accumulateAndGet(blk.number() + 1, Math::max);
+            f.allocated.accumulateAndGet(blk.number() + 1, Math::max);
+            written(f, blk.fileName());
+            blksWritten.incrementAndGet();
         } catch (IOException e) {
             throw new RuntimeException("cannot write block" + blk);
         }
     }
 
-    public synchronized BlockId append(String filename) {
-        int newblknum = length(filename);
-        BlockId blk = new BlockId(filename, newblknum);
-        byte[] b = new byte[blocksize];
+    /**
+     * Write the specified pages to a range of consecutive blocks
+     * of a file, starting at the specified block,
+     * with a single gathering write.
+     * @param filename the name of the file
+     * @param firstblk the number of the first block to write
+     * @param pages the pages to write (one page per block)
+     */
+    public void writeRange(String filename, int firstblk, Page[] pages) {
+        try {
+            OpenFile f = getFile(filename);
+            ByteBuffer[] bufs = new ByteBuffer[pages.length];
+            for (int i = 0; i < bufs.length; i++) {
+                bufs[i] = pages[i].contents();
+                if (f.checksummed)
+                    setChecksum(bufs[i]);
+            }
+            writeFully(f, bufs, (long) firstblk * f.blocksize);
+            f.numBlocks.accumulateAndGet(firstblk + pages.length, Math::max);
+            f.allocated.accumulateAndGet(firstblk + pages.length, Math::max);
+            written(f, filename);
+            blksWritten.addAndGet(pages.length);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot write blocks " + firstblk + "-"
+                    + (firstblk + pages.length - 1) + " of " + filename);
+        }
+    }
+
+    /**
+     * Append a block to the file by raising its high-water mark.
+     * An append that reaches the end of the allocated space
+     * also allocates the next extent; the others do no I/O.
+     * @param filename the name of the file
+     * @return the new block
+     */
+    public BlockId append(String filename) {
+        BlockId blk = null;
         try {
-            RandomAccessFile f = getFile(blk.fileName());
-            f.seek(blk.number() * blocksize);
-            f.write(b);
-            blksWritten++;
+            OpenFile f = getFile(filename);
+            blk = new BlockId(filename, f.numBlocks.getAndIncrement());
+            if (blk.number() >= f.allocated.get())
+                extend(f, blk);
         } catch (IOException e) {
             throw new RuntimeException("cannot append block" + blk);
         }
         return blk;
     }
 
+    /**
+     * Allocate zeroed blocks at the end of the file, an extent at a time,
+     * until the file has the specified number of blocks on disk.
+     * The high-water mark is not raised: the blocks are not appended,
+     * but writing them later does not grow the file.
+     * @param filename the name of the file
+     * @param numblocks the number of blocks to allocate
+     */
+    public void preallocate(String filename, int numblocks) {
+        try {
+            OpenFile f = getFile(filename);
+            synchronized (f) {
+                int start = f.allocated.get();
+                if (numblocks > start)
+                    allocate(f, filename, start, numblocks);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("cannot preallocate " + filename);
+        }
+    }
+
+    /**
+     * Close the file and give it a new name, replacing any file
+     * that has that name. The new name may be in a subdirectory
+     * of the database directory, which is created if needed.
+     * @param filename the name of the file
+     * @param newname the new name of the file
+     */
+    public void rename(String filename, String newname) {
+        close(filename);
+        close(newname);
+        try {
+            Path target = new File(dbDirectory, newname).toPath();
+            Files.createDirectories(target.getParent());
+            Files.move(new File(dbDirectory, filename).toPath(), target,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot rename " + filename + " to " + newname);
+        }
+    }
+
+    /**
+     * Close the file and delete it.
+     * @param filename the name of the file
+     */
+    public void delete(String filename) {
+        close(filename);
+        new File(dbDirectory, filename).delete();
+    }
+
+    /**
+     * Return the number of blocks in the file, up to its high-water mark.
+     * @param filename the name of the file
+     */
     public int length(String filename) {
         try {
-            RandomAccessFile f = getFile(filename);
-            return (int) (f.length() / blocksize);
+            return getFile(filename).numBlocks.get();
         } catch (IOException e) {
             throw new RuntimeException("cannot access " + filename);
         }
     }
 
+    /**
+     * Return true if the file exists. Unlike the other
+     * methods, this does not create the file if it does not.
+     * @param filename the name of the file
+     */
+    public boolean exists(String filename) {
+        return openFiles.containsKey(filename) || new File(dbDirectory, filename).exists();
+    }
+
+    /**
+     * Force any unsynced writes of the specified file to disk,
+     * first rewriting its trailer if the high-water mark has grown.
+     * A caller that finds another caller forcing the file waits
+     * for it, and forces again unless that force covered
+     * every write made before the call.
+     * @param filename the name of the file
+     */
+    public void sync(String filename) {
+        OpenFile f = openFiles.get(filename);
+        if (f != null)
+            sync(f, filename);
+    }
+
+    /**
+     * Force the unsynced writes of every file to disk.
+     */
+    public void syncAll() {
+        for (Map.Entry<String, OpenFile> e : openFiles.entrySet())
+            sync(e.getValue(), e.getKey());
+    }
+
+    private void sync(OpenFile f, String filename) {
+        try {
+            writeTrailer(f, filename);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot sync " + filename);
+        }
+        if (f.synced >= f.writes.get())
+            return;
+        synchronized (f.syncLock) {
+            long target = f.writes.get();
+            if (f.synced >= target)
+                return;
+            try {
+                f.channel.force(false);
+            } catch (IOException e) {
+                // the count is not advanced, so the next sync forces again
+                throw new RuntimeException("cannot sync " + filename);
+            }
+            f.synced = target;
+            syncs.incrementAndGet();
+        }
+    }
+
     public boolean isNew() {
         return isNew;
     }
 
+    /**
+     * Return the block size of data and index files.
+     */
     public int blockSize() {
         return blocksize;
     }
 
+    /**
+     * Return the number of bytes of a data or index block
+     * that are available to records, which excludes the checksum
+     * at the end of the block when checksums are enabled.
+     */
+    public int usableBlockSize() {
+        return checksums ? blocksize - CHECKSUM_SIZE : blocksize;
+    }
+
+    /**
+     * Return the block size of the specified file.
+     * @param filename the name of the file
+     */
+    public int blockSize(String filename) {
+        return isLog(filename) ? logblocksize : blocksize;
+    }
+
+    /**
+     * Return true if the specified file is read and written with direct I/O.
+     * @param filename the name of the file
+     */
+    public boolean isDirect(String filename) {
+        try {
+            return getFile(filename).direct;
+        } catch (IOException e) {
+            throw new RuntimeException("cannot access " + filename);
+        }
+    }
+
     public FileMgrStatistics getStatistics() {
-        return new FileMgrStatistics(blksRead, blksWritten);
+        return new FileMgrStatistics(blksRead.get(), blksWritten.get(), syncs.get(), mappedReads.get(),
+                checksumFailures.get());
     }
 
-    private RandomAccessFile getFile(String filename) throws IOException {
-        RandomAccessFile f = openFiles.get(filename);
+    private OpenFile getFile(String filename) throws IOException {
+        OpenFile f = openFiles.get(filename);
         if (f == null) {
-            File dbTable = new File(dbDirectory, filename);
-            f = new RandomAccessFile(dbTable, "rws");
-            openFiles.put(filename, f);
+            synchronized (openFiles) {
+                f = openFiles.get(filename);
+                if (f == null) {
+                    Path dbTable = new File(dbDirectory, filename).toPath();
+                    int size = blockSize(filename);
+                    FileChannel fc = null;
+                    if (DIRECT_IO && !isTemp(filename) && !isLog(filename))
+                        fc = openDirect(dbTable, filename, size);
+                    boolean direct = fc != null;
+                    if (!direct)
+                        fc = FileChannel.open(dbTable, openOptions(filename));
+                    boolean mapped = MAPPED_READS && !direct && !isTemp(filename) && !isLog(filename);
+                    boolean checksummed = checksums && !isTemp(filename) && !isLog(filename);
+                    ByteBuffer trailer = isTemp(filename) || isLog(filename) ? null
+                            : direct ? new PageArena(1, size).page(0).contents() : ByteBuffer.allocate(size);
+                    int allocated = (int) (fc.size() / size);
+                    int numblocks = allocated;
+                    if (trailer != null && allocated > 0 && readTrailer(fc, trailer, allocated - 1)) {
+                        allocated--;
+                        numblocks = Math.min(trailer.getInt(Integer.BYTES), allocated);
+                    }
+                    f = new OpenFile(fc, size, numblocks, allocated, mapped, checksummed, direct, trailer);
+                    openFiles.put(filename, f);
+                }
+            }
         }
         return f;
     }
+
+    private void readHeader(File header) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(header))) {
+            if (in.readInt() != HEADER_MAGIC)
+                throw new RuntimeException("bad database header " + header);
+            blocksize = in.readInt();
+            logblocksize = in.readInt();
+            checksums = in.readBoolean();
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read " + header);
+        }
+    }
+
+    private void writeHeader(File header) {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(header))) {
+            out.writeInt(HEADER_MAGIC);
+            out.writeInt(blocksize);
+            out.writeInt(logblocksize);
+            out.writeBoolean(checksums);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot write " + header);
+        }
+    }
+
+    /**
+     * Allocate zeroed blocks from the end of
+     * the allocated space to the end of the extent holding the block.
+     * Appends that find the space already allocated do nothing.
+     */
+    private void extend(OpenFile f, BlockId blk) throws IOException {
+        synchronized (f) {
+            int start = f.allocated.get();
+            if (blk.number() < start)
+                return;
+            int end = (blk.number() / EXTENT_BLOCKS + 1) * EXTENT_BLOCKS;
+            allocate(f, blk.fileName(), start, end);
+        }
+    }
+
+    /**
+     * Write zeroed blocks from the start block up to the end block,
+     * at most EXTENT_BLOCKS blocks per write.
+     * Zeroing a large range with one write made later overwrites
+     * of its blocks noticeably slower to force on ext4.
+     * The trailer is written past the new end first, so that the
+     * file ends with a trailer while the old one is zeroed.
+     * The caller holds the file's lock.
+     */
+    private void allocate(OpenFile f, String filename, int start, int end) throws IOException {
+        if (f.trailer != null)
+            putTrailer(f, end);
+        int chunk = Math.min(end - start, EXTENT_BLOCKS);
+        // direct I/O needs aligned memory, which a heap buffer is not
+        ByteBuffer zeros = f.direct ? new PageArena(1, chunk * f.blocksize).page(0).contents()
+                                    : ByteBuffer.allocate(chunk * f.blocksize);
+        for (int blk = start; blk < end; blk += chunk) {
+            int n = Math.min(chunk, end - blk);
+            zeros.clear().limit(n * f.blocksize);
+            writeFully(f.channel, zeros, (long) blk * f.blocksize);
+        }
+        f.allocated.accumulateAndGet(end, Math::max);
+        written(f, filename);
+        blksWritten.addAndGet(end - start);
+    }
+
+    /**
+     * Close the file if it is open, forgetting its unsynced writes.
+     */
+    private void close(String filename) {
+        OpenFile f;
+        synchronized (openFiles) {
+            f = openFiles.remove(filename);
+        }
+        if (f == null)
+            return;
+        try {
+            f.channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("cannot close " + filename);
+        }
+    }
+
+    /**
+     * Rewrite the file's trailer if the high-water mark has grown
+     * or the allocated space has moved past the trailer.
+     * This is done when the file is synced, not on every append,
+     * since recovery needs the mark on disk only with the blocks.
+     * A file without a trailer block, from before trailers or cut
+     * short by a crash during an extension, is counted in full
+     * when it is opened, and gets a trailer when it next grows.
+     */
+    private void writeTrailer(OpenFile f, String filename) throws IOException {
+        if (f.trailer == null || trailerCurrent(f))
+            return;
+        synchronized (f) {
+            if (trailerCurrent(f))
+                return;
+            putTrailer(f, f.allocated.get());
+        }
+        written(f, filename);
+    }
+
+    private static boolean trailerCurrent(OpenFile f) {
+        return f.numBlocks.get() <= f.trailerMark && f.allocated.get() == f.trailerBlock;
+    }
+
+    /**
+     * Write the trailer, holding the current high-water mark,
+     * to the specified block. The caller holds the file's lock.
+     */
+    private static void putTrailer(OpenFile f, int blknum) throws IOException {
+        int mark = f.numBlocks.get();
+        f.trailer.clear();
+        f.trailer.putInt(0, TRAILER_MAGIC);
+        f.trailer.putInt(Integer.BYTES, mark);
+        writeFully(f.channel, f.trailer, (long) blknum * f.blocksize);
+        f.trailerMark = mark;
+        f.trailerBlock = blknum;
+    }
+
+    /**
+     * Read the specified block of a file that is being opened into
+     * the trailer page, and return true if it is a trailer.
+     */
+    private static boolean readTrailer(FileChannel fc, ByteBuffer trailer, int blknum) throws IOException {
+        trailer.clear();
+        readFully(fc, trailer, (long) blknum * trailer.capacity());
+        return trailer.getInt(0) == TRAILER_MAGIC;
+    }
+
+    /**
+     * Open the file for direct I/O, or return null if the block size
+     * is not suitably aligned or the platform does not support it.
+     */
+    private FileChannel openDirect(Path path, String filename, int size) {
+        try {
+            long fsblocksize = Files.getFileStore(path.getParent()).getBlockSize();
+            if (size % PageArena.ALIGNMENT != 0 || PageArena.ALIGNMENT % fsblocksize != 0)
+                return null;
+            OpenOption[] standard = openOptions(filename);
+            OpenOption[] options = Arrays.copyOf(standard, standard.length + 1);
+            options[options.length - 1] = ExtendedOpenOption.DIRECT;
+            return FileChannel.open(path, options);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private OpenOption[] openOptions(String filename) {
+        if (SYNC_EVERY_WRITE && !isTemp(filename))
+            return new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.SYNC};
+        return new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE};
+    }
+
+    /**
+     * Copy the block from its mapped segment into the page.
+     * Returns false if the block's segment cannot be mapped yet.
+     */
+    private boolean readMapped(OpenFile f, BlockId blk, Page p) throws IOException {
+        int segnum = blk.number() / MAP_SEGMENT_BLOCKS;
+        MappedByteBuffer seg = f.segment(segnum, MAP_SEGMENT_BLOCKS * f.blocksize);
+        if (seg == null)
+            return false;
+        int offset = (blk.number() % MAP_SEGMENT_BLOCKS) * f.blocksize;
+        p.contents().put(0, seg, offset, f.blocksize);
+        mappedReads.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Count a completed write of the file, which is not yet on disk.
+     */
+    private void written(OpenFile f, String filename) {
+        if (!SYNC_EVERY_WRITE && !isTemp(filename))
+            f.writes.incrementAndGet();
+    }
+
+    /**
+     * Store the checksum of the block's contents in its last bytes.
+     */
+    private static void setChecksum(ByteBuffer bb) {
+        int trailer = bb.capacity() - CHECKSUM_SIZE;
+        bb.putInt(trailer, checksum(bb, trailer));
+    }
+
+    /**
+     * Check the checksum of a block that has just been read.
+     * A block of zeros has never been written, and is accepted.
+     */
+    private void verify(BlockId blk, ByteBuffer bb) {
+        int trailer = bb.capacity() - CHECKSUM_SIZE;
+        if (bb.getInt(trailer) != checksum(bb, trailer) && !isZero(bb)) {
+            checksumFailures.incrementAndGet();
+            throw new RuntimeException("checksum mismatch in block " + blk);
+        }
+    }
+
+    private static int checksum(ByteBuffer bb, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bb.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+
+    private static boolean isZero(ByteBuffer bb) {
+        for (int i = 0; i < bb.capacity(); i++)
+            if (bb.get(i) != 0)
+                return false;
+        return true;
+    }
+
+    private static boolean isLog(String filename) {
+        return filename.endsWith(".log");
+    }
+
+    /**
+     * Return true if the file holds a temporary table,
+     * which is deleted when the database is opened.
+     */
+    public static boolean isTemp(String filename) {
+        return filename.startsWith("temp");
+    }
+
+    /**
+     * Fill the buffer from the specified file position.
+     * Bytes beyond the end of the file are read as zeros.
+     */
+    private static void readFully(FileChannel fc, ByteBuffer bb, long pos) throws IOException {
+        while (bb.hasRemaining()) {
+            if (fc.read(bb, pos + bb.position()) < 0)
+                break;
+        }
+        while (bb.hasRemaining())
+            bb.put((byte) 0);
+    }
+
+    /**
+     * Fill the buffers from the specified file position
+     * with one scattering read. Scattering reads use the channel's
+     * position, so they are serialized per file; positional reads
+     * and writes do not use the position and are unaffected.
+     */
+    private static void readFully(OpenFile f, ByteBuffer[] bufs, long pos) throws IOException {
+        synchronized (f) {
+            f.channel.position(pos);
+            while (bufs[bufs.length - 1].hasRemaining()) {
+                if (f.channel.read(bufs) < 0)
+                    break;
+            }
+        }
+        for (ByteBuffer bb : bufs)
+            while (bb.hasRemaining())
+                bb.put((byte) 0);
+    }
+
+    /**
+     * Write the buffers at the specified file position with one
+     * gathering write, serialized per file like scattering reads.
+     */
+    private static void writeFully(OpenFile f, ByteBuffer[] bufs, long pos) throws IOException {
+        synchronized (f) {
+            f.channel.position(pos);
+            while (bufs[bufs.length - 1].hasRemaining())
+                f.channel.write(bufs);
+        }
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer bb, long pos) throws IOException {
+        while (bb.hasRemaining())
+            fc.write(bb, pos + bb.position());
+    }
 }
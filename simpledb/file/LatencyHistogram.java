@@ -0,0 +1,68 @@
+package simpledb.file;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, kept in power-of-two buckets of
+ * microseconds. Bucket i counts the latencies in [2^i, 2^(i+1)) us;
+ * bucket 0 also counts the latencies under a microsecond.
+ * Recording is lock-free, so many threads can record at once.
+ */
+public class LatencyHistogram {
+    private static final int NUM_BUCKETS = 40;
+    private LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+    private LongAdder count = new LongAdder();
+    private LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Record one latency.
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 1);
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), NUM_BUCKETS - 1);
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Return the mean latency, in microseconds.
+     */
+    public double meanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    /**
+     * Return an upper bound on the specified percentile
+     * of the recorded latencies, in microseconds.
+     * @param percentile a value between 0 and 100
+     */
+    public long percentileMicros(double percentile) {
+        long n = count.sum();
+        long target = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= target && seen > 0)
+                return 1L << (i + 1);
+        }
+        return 0;
+    }
+
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50<%dus p99<%dus max<%dus",
+                count(), meanMicros(), percentileMicros(50),
+                percentileMicros(99), percentileMicros(100));
+    }
+}
@@ -0,0 +1,44 @@
+package simpledb.file;
+
+import simpledb.server.SimpleDB;
+
+public class MappedReadTest {
+    public static void main(String[] args) {
+        FileMgr.MAPPED_READS = true;
+        FileMgr.MAP_SEGMENT_BLOCKS = 16;
+        SimpleDB db = new SimpleDB("mappedreadtest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        String filename = "testfile.tbl";
+
+        Page p = new Page(fm.blockSize());
+        for (int i = 0; i < 40; i++) {
+            BlockId blk = fm.append(filename);
+            p.setInt(0, blk.number());
+            p.setString(Integer.BYTES, "block" + blk.number());
+            fm.write(blk, p);
+        }
+        System.out.println("blocks read correctly: " + readAll(fm, filename, 0));
+        System.out.println(fm.getStatistics());
+
+        // overwrite blocks that are already mapped, and read them again
+        for (int i = 0; i < 40; i++) {
+            BlockId blk = new BlockId(filename, i);
+            p.setInt(0, i + 1000);
+            p.setString(Integer.BYTES, "block" + (i + 1000));
+            fm.write(blk, p);
+        }
+        System.out.println("blocks read correctly after update: " + readAll(fm, filename, 1000));
+        System.out.println(fm.getStatistics());
+    }
+
+    private static int readAll(FileMgr fm, String filename, int delta) {
+        Page p = new Page(fm.blockSize());
+        int count = 0;
+        for (int i = 0; i < fm.length(filename); i++) {
+            fm.read(new BlockId(filename, i), p);
+            if (p.getInt(0) == i + delta && p.getString(Integer.BYTES).equals("block" + (i + delta)))
+                count++;
+        }
+        return count;
+    }
+}
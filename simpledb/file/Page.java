@@ -2,6 +2,7 @@ package simpledb.file;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.*;
+import java.util.zip.CRC32C;
 
 public class Page {
     private ByteBuffer bb;
@@ -12,6 +13,11 @@ public class Page {
         bb = ByteBuffer.allocateDirect(blocksize);
     }
 
+    // For creating the pages of a page arena
+    Page(ByteBuffer bb) {
+        this.bb = bb;
+    }
+
     // For creating log pages
     public Page(byte[] b) {
         bb = ByteBuffer.wrap(b);
@@ -29,11 +35,20 @@ public class Page {
         }
     }
 
+    public long getLong(int offset) {
+        return bb.getLong(offset);
+    }
+
+    public void setLong(int offset, long n) {
+        bb.putLong(offset, n);
+    }
+
+    // The accessors below use absolute positions, and so never change
+    // the buffer's position; concurrent readers of a page are safe.
+
     public byte[] getBytes(int offset) {
-        bb.position(offset);
-        int length = bb.getInt();
-        byte[] b = new byte[length];
-        bb.get(b);
+        byte[] b = new byte[bb.getInt(offset)];
+        bb.get(offset + Integer.BYTES, b);
         return b;
     }
 
@@ -41,9 +56,8 @@ public class Page {
         if (bb.capacity() - offset < Integer.BYTES + b.length) {
             System.out.println("ERROR: bytes " + new String(b, CHARSET) + " do not fit at location " + offset + " of the page");
         } else {
-            bb.position(offset);
-            bb.putInt(b.length);
-            bb.put(b);
+            bb.putInt(offset, b.length);
+            bb.put(offset + Integer.BYTES, b);
         }
     }
 
@@ -52,6 +66,28 @@ public class Page {
         return new String(b, CHARSET);
     }
 
+    /**
+     * Compare the string stored at the specified offset with a key,
+     * without creating a String. The key must be encoded with CHARSET.
+     * Because CHARSET has one byte per char, the result has the same sign
+     * as String.compareTo on the decoded strings.
+     * @param offset the offset of the stored string
+     * @param key the encoded key
+     * @return a negative number, zero, or a positive number as the stored
+     *         string is less than, equal to, or greater than the key
+     */
+    public int compareString(int offset, byte[] key) {
+        int length = bb.getInt(offset);
+        int pos = offset + Integer.BYTES;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (bb.get(pos + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return length - key.length;
+    }
+
     public void setString(int offset, String s) {
         byte[] b = s.getBytes(CHARSET);
         setBytes(offset, b);
@@ -70,11 +106,27 @@ public class Page {
         if (bb.capacity() - offset < 1) {
             System.out.println("ERROR: boolean " + (b ? "true" : "false") + " does not fit at location " + offset + " of the page");
         } else {
-            bb.position(offset);
-            bb.put((byte) (b ? 1 : 0));
+            bb.put(offset, (byte) (b ? 1 : 0));
         }
     }
 
+    /**
+     * Copy the contents of another page, which must
+     * be the same size, into this page.
+     */
+    public void copyFrom(Page p) {
+        bb.put(0, p.bb, 0, bb.capacity());
+    }
+
+    /**
+     * Return the CRC32C checksum of the page's contents.
+     */
+    public int checksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(bb.duplicate().clear());
+        return (int) crc.getValue();
+    }
+
     // a package private method, needed by FileMgr
     ByteBuffer contents() {
         bb.position(0);
@@ -0,0 +1,27 @@
+package simpledb.file;
+
+public class PageAccessTest {
+    public static void main(String[] args) {
+        Page p = new Page(400);
+        String[] vals = {"", "abc", "abd", "ab", "abcd", "zebra"};
+        int pos = 0;
+        int[] offsets = new int[vals.length];
+        for (int i = 0; i < vals.length; i++) {
+            offsets[i] = pos;
+            p.setString(pos, vals[i]);
+            pos += Page.maxLength(vals[i].length());
+        }
+
+        int wrong = 0;
+        for (int i = 0; i < vals.length; i++) {
+            String stored = vals[i];
+            for (String key : vals) {
+                int expected = Integer.signum(stored.compareTo(key));
+                if (Integer.signum(p.compareString(offsets[i], key.getBytes(Page.CHARSET))) != expected)
+                    wrong++;
+            }
+        }
+        System.out.println("wrong results: " + wrong + " (expected 0)");
+        System.out.println("position after reads: " + p.contents().position() + " (expected 0)");
+    }
+}
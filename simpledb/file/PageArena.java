@@ -0,0 +1,51 @@
+package simpledb.file;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed number of pages carved out of one off-heap allocation.
+ * The pages are contiguous, and the first one is aligned to
+ * ALIGNMENT bytes, so when the page size is a multiple of ALIGNMENT
+ * every page is aligned and can be read and written with direct I/O.
+ * The buffer manager allocates all of its pages from one arena.
+ */
+public class PageArena {
+    /**
+     * The alignment of each page, which is the largest
+     * block size a file system requires for direct I/O.
+     */
+    public static final int ALIGNMENT = 4096;
+
+    private final ByteBuffer memory;
+    private final int pagesize;
+
+    /**
+     * Allocate an arena of the specified number of pages.
+     * @param numpages the number of pages
+     * @param pagesize the size of each page
+     */
+    public PageArena(int numpages, int pagesize) {
+        this.pagesize = pagesize;
+        long total = (long) numpages * pagesize + ALIGNMENT;
+        if (total > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("page arena too large: " + numpages + " pages of " + pagesize);
+        ByteBuffer bb = ByteBuffer.allocateDirect((int) total);
+        int start = (ALIGNMENT - bb.alignmentOffset(0, ALIGNMENT)) % ALIGNMENT;
+        memory = bb.slice(start, numpages * pagesize);
+    }
+
+    /**
+     * Return the number of pages in the arena.
+     */
+    public int size() {
+        return memory.capacity() / pagesize;
+    }
+
+    /**
+     * Return a page that wraps the specified slice of the arena.
+     * @param i the page number
+     */
+    public Page page(int i) {
+        return new Page(memory.slice(i * pagesize, pagesize));
+    }
+}
@@ -40,7 +40,8 @@ public class BTPage {
     */
    public int findSlotBefore(Constant searchkey) {
       int slot = 0;
-      while (slot < getNumRecs() && getDataVal(slot).compareTo(searchkey) < 0)
+      int numrecs = getNumRecs();
+      while (slot < numrecs && compareDataVal(slot, searchkey) < 0)
          slot++;
       return slot-1;
    }
@@ -87,6 +88,21 @@ public class BTPage {
    public Constant getDataVal(int slot) {
       return getVal(slot, "dataval");
    }
+
+   /**
+    * Compare the dataval of the record at the specified slot
+    * with a key, without creating a Constant for the dataval.
+    * @param slot the integer slot of an index record
+    * @param key the key to compare with
+    * @return the sign of the comparison, as for Constant.compareTo
+    */
+   public int compareDataVal(int slot, Constant key) {
+      int pos = fldpos(slot, "dataval");
+      if (layout.schema().type("dataval") == INTEGER)
+         return Integer.compare(tx.getInt(currentblk, pos), key.asInt());
+      else
+         return tx.compareString(currentblk, pos, key.asBytes());
+   }
    
    /**
     * Return the value of the page's flag field
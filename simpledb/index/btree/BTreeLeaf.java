@@ -52,7 +52,7 @@ public class BTreeLeaf {
       currentslot++;
       if (currentslot >= contents.getNumRecs()) 
          return tryOverflow();
-      else if (contents.getDataVal(currentslot).equals(searchkey))
+      else if (contents.compareDataVal(currentslot, searchkey) == 0)
          return true;
       else 
          return tryOverflow();
@@ -57,7 +57,7 @@ public class HashIndex implements Index {
 	 */
 	public boolean next() {
 		while (ts.next())
-			if (ts.getVal("dataval").equals(searchkey))
+			if (ts.fieldEquals("dataval", searchkey))
 				return true;
 		return false;
 	}
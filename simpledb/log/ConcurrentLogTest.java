@@ -0,0 +1,66 @@
+package simpledb.log;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.Page;
+
+public class ConcurrentLogTest {
+   private static final int NUM_THREADS = 8;
+   private static final int NUM_RECORDS = 5000;
+
+   public static void main(String[] args) throws Exception {
+      LogMgr.LOG_BUFFERS = 4;
+      SimpleDB db = new SimpleDB("concurrentlogtest", 400, 8);
+      LogMgr lm = db.logMgr();
+      long start = lm.latestLSN();
+
+      // each thread appends numbered records of its own size, and checks its lsns
+      long[][] lsns = new long[NUM_THREADS][NUM_RECORDS];
+      List<Thread> threads = new ArrayList<>();
+      for (int i=0; i<NUM_THREADS; i++) {
+         int id = i;
+         Thread t = new Thread(() -> {
+            for (int j=0; j<NUM_RECORDS; j++) {
+               byte[] rec = new byte[8 + 4 * id];
+               Page p = new Page(rec);
+               p.setInt(0, id);
+               p.setInt(4, j);
+               lsns[id][j] = lm.append(rec);
+               if (j % 500 == 0)
+                  lm.flush(lsns[id][j]);
+            }
+         });
+         t.start();
+         threads.add(t);
+      }
+      for (Thread t : threads)
+         t.join();
+
+      boolean increasing = true;
+      Set<Long> distinct = new HashSet<>();
+      for (long[] l : lsns)
+         for (int j=0; j<NUM_RECORDS; j++) {
+            distinct.add(l[j]);
+            if (l[j] <= start || (j > 0 && l[j] <= l[j-1]))
+               increasing = false;
+         }
+      System.out.println("distinct lsns: " + distinct.size() + " (expected " + NUM_THREADS * NUM_RECORDS + ")");
+      System.out.println("lsns of each thread increase: " + increasing + " (expected true)");
+
+      // reading backwards, each thread's records come in descending order
+      int[] next = new int[NUM_THREADS];
+      Arrays.fill(next, NUM_RECORDS - 1);
+      int found = 0, wrong = 0;
+      for (Iterator<byte[]> iter = lm.iterator(); iter.hasNext() && found + wrong < NUM_THREADS * NUM_RECORDS; ) {
+         byte[] rec = iter.next();
+         Page p = new Page(rec);
+         int id = p.getInt(0);
+         if (id < 0 || id >= NUM_THREADS || rec.length != 8 + 4 * id || p.getInt(4) != next[id]--)
+            wrong++;
+         else
+            found++;
+      }
+      System.out.println("records read back in order: " + found + " (expected " + NUM_THREADS * NUM_RECORDS + ")");
+      System.out.println("records out of place: " + wrong + " (expected 0)");
+   }
+}
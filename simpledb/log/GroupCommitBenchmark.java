@@ -0,0 +1,76 @@
+package simpledb.log;
+
+import java.io.File;
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Runs small update transactions from several threads, each on its
+ * own block, without a log writer and with group commit at several
+ * batching windows, and reports the commit throughput, the mean
+ * commit latency, and the number of commits per force of the log.
+ */
+public class GroupCommitBenchmark {
+   private static final long RUN_MILLIS = 2000;
+   private static final long[] WINDOWS = {-1, 0, 200, 1000}; // microseconds; -1 means no log writer
+   private static final int[] THREADS = {1, 8, 32};
+
+   public static void main(String[] args) throws Exception {
+      for (int nthreads : THREADS)
+         for (long window : WINDOWS)
+            run(nthreads, window);
+   }
+
+   private static void run(int nthreads, long window) throws Exception {
+      String dirname = "groupcommitbenchmark";
+      deleteDirectory(new File(dirname));
+      SimpleDB.GROUP_COMMIT_WINDOW = window;
+      SimpleDB db = new SimpleDB(dirname, 400, 64);
+      LogMgr lm = db.logMgr();
+      Transaction tx = db.newTx();
+      for (int i=0; i<nthreads; i++)
+         tx.append("testfile");
+      tx.commit();
+
+      long[] commits = new long[nthreads];
+      long[] nanos = new long[nthreads];
+      long end = System.currentTimeMillis() + RUN_MILLIS;
+      List<Thread> threads = new ArrayList<>();
+      for (int i=0; i<nthreads; i++) {
+         int id = i;
+         Thread t = new Thread(() -> {
+            BlockId blk = new BlockId("testfile", id);
+            while (System.currentTimeMillis() < end) {
+               Transaction t1 = db.newTx();
+               t1.pin(blk);
+               t1.setInt(blk, 0, t1.getInt(blk, 0) + 1, true);
+               long start = System.nanoTime();
+               t1.commit();
+               nanos[id] += System.nanoTime() - start;
+               commits[id]++;
+            }
+         });
+         t.start();
+         threads.add(t);
+      }
+      for (Thread t : threads)
+         t.join();
+      long total = Arrays.stream(commits).sum();
+      long totalNanos = Arrays.stream(nanos).sum();
+      String perSync = window < 0 ? "-" : String.format("%.1f", (double) lm.writerRequests() / Math.max(1, lm.writerSyncs()));
+      System.out.printf("%2d threads, window %5s: %7.0f commits/s, %7.0f us per commit, %s commits per sync%n",
+            nthreads, window < 0 ? "none" : window + "us", total * 1000.0 / RUN_MILLIS,
+            totalNanos / 1e3 / Math.max(1, total), perSync);
+      SimpleDB.GROUP_COMMIT_WINDOW = -1;
+   }
+
+   private static void deleteDirectory(File dir) {
+      File[] files = dir.listFiles();
+      if (files != null)
+         for (File f : files)
+            f.delete();
+      dir.delete();
+   }
+}
@@ -0,0 +1,48 @@
+package simpledb.log;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+
+public class GroupCommitTest {
+   private static final int NUM_THREADS = 8;
+   private static final int NUM_COMMITS = 50;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("groupcommittest", 400, 8);
+      LogMgr lm = db.logMgr();
+      lm.startWriter(1000);
+      int before = count(lm);
+
+      List<Thread> threads = new ArrayList<>();
+      for (int i=0; i<NUM_THREADS; i++) {
+         Thread t = new Thread(() -> {
+            for (int j=0; j<NUM_COMMITS; j++)
+               lm.flush(lm.append(new byte[20]));
+         });
+         t.start();
+         threads.add(t);
+      }
+      for (Thread t : threads)
+         t.join();
+
+      long syncs = lm.writerSyncs();
+      long requests = lm.writerRequests();
+      System.out.println("flush requests: " + requests + " (expected " + NUM_THREADS * NUM_COMMITS + ")");
+      System.out.println("commits per sync above 1: " + (requests > syncs) + " (expected true)");
+      System.out.println("records in the log: " + (count(lm) - before) + " (expected " + NUM_THREADS * NUM_COMMITS + ")");
+      System.out.println("flush of a saved lsn skips the writer: " + flushSaved(lm) + " (expected true)");
+   }
+
+   private static boolean flushSaved(LogMgr lm) {
+      long requests = lm.writerRequests();
+      lm.flush(1);
+      return lm.writerRequests() == requests;
+   }
+
+   private static int count(LogMgr lm) {
+      int n = 0;
+      for (Iterator<byte[]> iter = lm.iterator(); iter.hasNext(); iter.next())
+         n++;
+      return n;
+   }
+}
@@ -0,0 +1,50 @@
+package simpledb.log;
+
+import java.io.File;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+/**
+ * Appends log records with rings of different sizes, with and
+ * without a log writer, and reports the append throughput and the
+ * worst append latencies. With a ring of 2 pages and no writer, every
+ * page that fills up is written by an append, as before the ring; with
+ * a writer, full pages are written in the background.
+ */
+public class LogAppendBenchmark {
+   private static final int NUM_RECORDS = 200000;
+   private static final int RECORD_SIZE = 60;
+
+   public static void main(String[] args) {
+      for (int round=0; round<2; round++)
+         for (int buffers : new int[] {2, 8, 32})
+            for (boolean writer : new boolean[] {false, true})
+               run(buffers, writer);
+   }
+
+   private static void run(int buffers, boolean writer) {
+      String dirname = "logappendbenchmark";
+      File dir = new File(dirname);
+      File[] files = dir.listFiles();
+      if (files != null)
+         for (File f : files)
+            f.delete();
+      LogMgr.LOG_BUFFERS = buffers;
+      SimpleDB db = new SimpleDB(dirname, 400, 8);
+      LogMgr lm = db.logMgr();
+      if (writer)
+         lm.startWriter(0);
+      LatencyHistogram h = new LatencyHistogram();
+      byte[] rec = new byte[RECORD_SIZE];
+      long start = System.nanoTime();
+      for (int i=0; i<NUM_RECORDS; i++) {
+         long t = System.nanoTime();
+         lm.append(rec);
+         h.record(System.nanoTime() - t);
+      }
+      double secs = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%2d buffers, %-9s: %8.0f appends/s, p99.9 %4d us, max %5d us%n",
+            buffers, writer ? "writer" : "no writer", NUM_RECORDS / secs,
+            h.percentileMicros(99.9), h.percentileMicros(100));
+   }
+}
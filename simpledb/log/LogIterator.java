@@ -5,36 +5,44 @@ import simpledb.file.*;
 
 /**
  * A class that provides the ability to move through the
- * records of the log file in reverse order.
+ * records of the log in reverse order, from the block
+ * it starts at back to the first block of the oldest segment.
  * 
  * @author Edward Sciore
  */
 class LogIterator implements Iterator<byte[]> {
+   private LogMgr lm;
    private FileMgr fm;
-   private BlockId blk;
+   private int blknum;
+   private int firstblk;
    private Page p;
    private int currentpos;
    private int boundary;
+   private int blocksize;
 
    /**
-    * Creates an iterator for the records in the log file,
-    * positioned after the last log record.
+    * Creates an iterator for the records in the log,
+    * positioned after the last log record of the specified block.
     */
-   public LogIterator(FileMgr fm, BlockId blk) {
+   public LogIterator(LogMgr lm, FileMgr fm, int blknum) {
+      this.lm = lm;
       this.fm = fm;
-      this.blk = blk;
-      byte[] b = new byte[fm.blockSize()];
+      this.blknum = blknum;
+      firstblk = lm.firstBlock();
+      BlockId blk = lm.blockId(blknum);
+      blocksize = fm.blockSize(blk.fileName());
+      byte[] b = new byte[blocksize];
       p = new Page(b);
       moveToBlock(blk);
    }
 
    /**
     * Determines if the current log record
-    * is the earliest record in the log file.
+    * is the earliest record in the log.
     * @return true if there is an earlier record
     */
    public boolean hasNext() {
-      return currentpos<fm.blockSize() || blk.number()>0;
+      return currentpos<blocksize || blknum>firstblk;
    }
 
    /**
@@ -45,9 +53,9 @@ class LogIterator implements Iterator<byte[]> {
     * @return the next earliest log record
     */
    public byte[] next() {
-      if (currentpos == fm.blockSize()) {
-         blk = new BlockId(blk.fileName(), blk.number()-1);
-         moveToBlock(blk);
+      if (currentpos == blocksize) {
+         blknum--;
+         moveToBlock(lm.blockId(blknum));
       }
       byte[] rec = p.getBytes(currentpos);
       currentpos += Integer.BYTES + rec.length;
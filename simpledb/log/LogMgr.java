@@ -1,42 +1,154 @@
 package simpledb.log;
 
-import java.util.Iterator;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import simpledb.file.*;
 
 /**
- * The log manager, which is responsible for 
- * writing log records into a log file. The tail of 
- * the log is kept in a bytebuffer, which is flushed
- * to disk when needed. 
+ * The log manager, which is responsible for
+ * writing log records into the log. The tail of
+ * the log is kept in a ring of pages, one per block:
+ * records are appended to the page of the last block, and
+ * when it fills up, appends go on in the next page of the ring
+ * while the full pages wait to be written, several at a time
+ * with a single sequential write. An append only waits for a
+ * write when every page of the ring is full.
+ * <p>
+ * The LSN of a record is its position in the log: the number
+ * of bytes of the log up to the end of the record, counting
+ * the whole of each earlier block. LSNs therefore grow with
+ * the log, stay the same when the database is reopened, and
+ * locate their record, which {@link #read(long)} returns.
+ * Appends do not lock the log manager: an append reserves the
+ * space of its record by advancing the end of the log atomically,
+ * and copies the record into its space while other appends copy
+ * theirs. A copied record is published as soon as the records before
+ * it are, and the log is only written up to the last published record,
+ * so a record never reaches the disk before the records that precede it.
+ * <p>
+ * With a {@link LogWriter} started, the log is forced to disk by
+ * group commit: threads that need their records on disk wait for the
+ * writer, which forces the log once for all of them. The writer
+ * also writes full pages in the background as soon as they fill up.
+ * <p>
+ * The log is stored in segment files of LOG_SEGMENT_BLOCKS blocks each,
+ * named after the log file and numbered in log order. A manifest file,
+ * also named after the log file, records which segments exist. The segment after the one being written
+ * is always allocated in full ahead of time, so writing the log never
+ * grows a file. Once a checkpoint makes the oldest segments unneeded,
+ * {@link #truncate(long)} recycles them as future segments, deletes
+ * them, or moves them to an archive directory. Each block of the log
+ * is stamped with its number, which tells the blocks of the log from
+ * the zeros of a new segment and the old blocks of a recycled one,
+ * and carries a checksum of its contents, which tells a block that
+ * reached the disk from one that was lost or torn in a crash.
  * @author Edward Sciore
  */
 public class LogMgr {
+   /**
+    * The number of pages in the ring that holds the tail of the log.
+    */
+   public static int LOG_BUFFERS = 8;
+
+   /**
+    * The number of blocks in each segment file of a new log.
+    * An existing log keeps the size saved in its manifest.
+    */
+   public static int LOG_SEGMENT_BLOCKS = 256;
+
+   /**
+    * The largest number of segments kept allocated after the
+    * segment being written, counting the one allocated ahead of time.
+    * Segments removed by {@link #truncate(long)} become such spare
+    * segments until there are this many, and are deleted after that.
+    */
+   public static int LOG_SPARE_SEGMENTS = 2;
+
+   /**
+    * The directory, relative to the database directory, that
+    * segments removed by {@link #truncate(long)} are moved to;
+    * if null, they are recycled or deleted instead.
+    */
+   public static String LOG_ARCHIVE_DIR = null;
+
+   // the header of a block: the boundary, the number of the block, and its checksum
+   private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+   // the format of the log blocks, saved in the manifest; 0 is the format without checksums
+   private static final int FORMAT = 1;
+
+   private static record SegmentName(int segnum, String name) {}
+
    private FileMgr fm;
    private String logfile;
-   private Page logpage;
-   private BlockId currentblk;
-   private int latestLSN = 0;
-   private int lastSavedLSN = 0;
+   private String segmentBase; // the log file name without ".log", which begins the segment names
+   private String manifest;
+   private int blocksize;
+   private int segmentBlocks;
+   private volatile int firstSegment; // the oldest segment of the log
+   private int lastSegment; // the last segment allocated, after the one being written
+   private volatile SegmentName lastName = new SegmentName(-1, null); // the last segment name formatted
+   private Page[] ring;
+   private final AtomicLong reserved; // the end of the space reserved by appends
+   private final AtomicLong published; // the end of the records that are complete
+   private final Map<Long, Long> finished = new ConcurrentHashMap<>(); // complete records after an incomplete one, start to end
+   private volatile int firstUnwritten; // the first block whose final contents are not written
+   private Page tailCopy; // a copy of the last page, being written
+   private final Object writeLock = new Object(); // serializes the writes of the log
+   private volatile long lastSavedLSN;
+   private LogWriter writer;
 
    /**
-    * Creates the manager for the specified log file.
-    * If the log file does not yet exist, it is created
-    * with an empty first block.
+    * Creates the manager for the specified log.
+    * If the log does not yet exist, its first segment is
+    * created, with an empty first block.
+    * A database whose log is still the single file of the
+    * specified name, from before the log had segments,
+    * is refused rather than given a new, empty log,
+    * and so is a log whose blocks have no checksums.
     * @param FileMgr the file manager
-    * @param logfile the name of the log file
+    * @param logfile the name of the log, from which the
+    *        names of its segment files and manifest are made
     */
    public LogMgr(FileMgr fm, String logfile) {
       this.fm = fm;
       this.logfile = logfile;
-      byte[] b = new byte[fm.blockSize()];
-      logpage = new Page(b);
-      int logsize = fm.length(logfile);
-      if (logsize == 0)
-         currentblk = appendNewBlock();
+      segmentBase = logfile.endsWith(".log") ? logfile.substring(0, logfile.length() - 4) : logfile;
+      manifest = segmentBase + ".manifest.log";
+      blocksize = fm.blockSize(logfile);
+      ring = new Page[Math.max(2, LOG_BUFFERS)];
+      for (int i=0; i<ring.length; i++)
+         ring[i] = new Page(new byte[blocksize]);
+      tailCopy = new Page(new byte[blocksize]);
+      int currentblk;
+      if (!fm.exists(manifest) && fm.exists(logfile))
+         throw new RuntimeException("the log " + logfile + " has no segments; it was written by a version "
+               + "that kept the log in one file. Recover the database with that version and remove "
+               + logfile + " before opening it with this one");
+      if (fm.length(manifest) == 0) {
+         segmentBlocks = LOG_SEGMENT_BLOCKS;
+         fm.preallocate(segmentName(0), segmentBlocks);
+         writeManifest();
+         currentblk = 0;
+         page(currentblk).setInt(0, blocksize);
+         writeBlocks(currentblk, new Page[] {page(currentblk)});
+      }
       else {
-         currentblk = new BlockId(logfile, logsize-1);
-         fm.read(currentblk, logpage);
+         readManifest();
+         removeOrphans();
+         currentblk = lastBlock();
+         fm.read(blockId(currentblk), page(currentblk));
+         if (!isWritten(currentblk, page(currentblk)))
+            page(currentblk).setInt(0, blocksize); // not even the first block is on disk
       }
+      int boundary = page(currentblk).getInt(0);
+      long end = (long) currentblk * blocksize + (blocksize - boundary);
+      reserved = new AtomicLong(end);
+      published = new AtomicLong(end);
+      lastSavedLSN = end;
+      firstUnwritten = currentblk;
    }
 
    /**
@@ -45,19 +157,88 @@ public class LogMgr {
     * All earlier log records will also be written to disk.
     * @param lsn the LSN of a log record
     */
-   public void flush(int lsn) {
-      if (lsn >= lastSavedLSN)
+   public void flush(long lsn) {
+      if (lsn <= lastSavedLSN)
+         return;
+      lsn = Math.min(lsn, reserved.get());
+      awaitPublished(lsn);
+      if (writer != null)
+         writer.await(lsn);
+      else
          flush();
    }
 
+   /**
+    * Starts a log-writer thread, after which the log is forced
+    * to disk by group commit: a call to {@link #flush(long)} queues
+    * its lsn and waits for the writer, which forces the log once
+    * for every request it finds queued.
+    * @param windowMicros the time, in microseconds, the writer waits
+    *        after a request arrives for more requests to join its batch;
+    *        0 means it forces the log at once
+    */
+   public synchronized void startWriter(long windowMicros) {
+      if (writer != null)
+         return;
+      writer = new LogWriter(this, windowMicros);
+      writer.start();
+   }
+
+   /**
+    * Returns the number of times the log writer has forced the log,
+    * or 0 if there is no log writer.
+    */
+   public long writerSyncs() {
+      return writer == null ? 0 : writer.syncs();
+   }
+
+   /**
+    * Returns the number of flush requests served by the log writer,
+    * or 0 if there is no log writer. Divided by {@link #writerSyncs()},
+    * it gives the number of commits per force of the log.
+    */
+   public long writerRequests() {
+      return writer == null ? 0 : writer.requests();
+   }
+
+   /**
+    * Returns the LSN of the last record appended to the log.
+    */
+   public long latestLSN() {
+      return published.get();
+   }
+
    public Iterator<byte[]> iterator() {
-      flush();
-      return new LogIterator(fm, currentblk);
+      long lsn = published.get();
+      flush(lsn);
+      return new LogIterator(this, fm, blockOf(lsn));
+   }
+
+   /**
+    * Returns the log record with the specified LSN, which must
+    * be the LSN of a record returned by {@link #append(byte[])}.
+    * The record is read from the ring if its block is still there,
+    * and from the log file otherwise.
+    * @param lsn the LSN of the record
+    * @return the bytes of the record
+    */
+   public byte[] read(long lsn) {
+      awaitPublished(lsn);
+      int blknum = blockOf(lsn);
+      int recpos = blocksize - (int) (lsn - (long) blknum * blocksize);
+      synchronized (writeLock) {
+         // the page of a block is not reused before the block is written
+         if (blknum >= firstUnwritten)
+            return page(blknum).getBytes(recpos);
+      }
+      Page p = new Page(new byte[blocksize]);
+      fm.read(blockId(blknum), p);
+      return p.getBytes(recpos);
    }
 
    /**
-    * Appends a log record to the log buffer. 
-    * The record consists of an arbitrary array of bytes. 
+    * Appends a log record to the log buffer.
+    * The record consists of an arbitrary array of bytes.
     * Log records are written right to left in the buffer.
     * The size of the record is written before the bytes.
     * The beginning of the buffer contains the location
@@ -67,38 +248,380 @@ public class LogMgr {
     * @param logrec a byte buffer containing the bytes.
     * @return the LSN of the final value
     */
-   public synchronized int append(byte[] logrec) {
-      int boundary = logpage.getInt(0);
-      int recsize = logrec.length;
-      int bytesneeded = recsize + Integer.BYTES;
-      if (boundary - bytesneeded < Integer.BYTES) { // the log record doesn't fit,
-         flush();        // so move to the next block.
-         currentblk = appendNewBlock();
-         boundary = logpage.getInt(0);
+   public long append(byte[] logrec) {
+      int bytesneeded = logrec.length + Integer.BYTES;
+      if (bytesneeded > blocksize - HEADER_SIZE)
+         throw new IllegalArgumentException("a log record of " + logrec.length + " bytes does not fit in a block");
+
+      // reserve the space of the record
+      long start, lsn;
+      while (true) {
+         start = reserved.get();
+         int blknum = blockOf(start);
+         int used = (int) (start - (long) blknum * blocksize);
+         if (used + bytesneeded <= blocksize - HEADER_SIZE)
+            lsn = start + bytesneeded;
+         else { // the log record doesn't fit, so move to the next block
+            if (blknum + 1 - firstUnwritten >= ring.length) {
+               writeFull(); // every page of the ring is full
+               Thread.yield(); // so that earlier appends can publish
+               continue;
+            }
+            lsn = (long) (blknum + 1) * blocksize + bytesneeded;
+         }
+         if (reserved.compareAndSet(start, lsn))
+            break;
+      }
+
+      // copy the record into its space, and publish it
+      int blknum = blockOf(lsn);
+      Page page = page(blknum);
+      int recpos = blocksize - (int) (lsn - (long) blknum * blocksize);
+      if (blknum != blockOf(start)) // the previous block is full, so its boundary is final
+         page(blknum - 1).setInt(0, blocksize - (int) (start - (long) (blknum - 1) * blocksize));
+      page.setBytes(recpos, logrec);
+      if (!published.compareAndSet(start, lsn))
+         finished.put(start, lsn); // an earlier record is still being copied
+      publishFinished();
+      if (blknum != blockOf(start) && writer != null)
+         writer.pageFilled();
+      return lsn;
+   }
+
+   /**
+    * Publish the finished records that follow the published ones.
+    * A record that finishes before the records ahead of it waits
+    * in the finished map, and is published by whichever append
+    * publishes the record before it.
+    */
+   private void publishFinished() {
+      while (true) {
+         long end = published.get();
+         Long next = finished.get(end);
+         if (next == null)
+            return;
+         if (published.compareAndSet(end, next))
+            finished.remove(end);
+      }
+   }
+
+   /**
+    * Wait until the records up to the specified LSN are published,
+    * that is, until the appends that reserved space before it have
+    * copied their records.
+    */
+   private void awaitPublished(long lsn) {
+      for (int spins = 0; published.get() < lsn; spins++) {
+         if (spins < 100)
+            Thread.onSpinWait();
+         else
+            Thread.yield();
       }
-      int recpos = boundary - bytesneeded;
+   }
 
-      logpage.setBytes(recpos, logrec);
-      logpage.setInt(0, recpos); // the new boundary
-      latestLSN += 1;
-      return latestLSN;
+   /**
+    * Return the number of the block that holds the record with
+    * the specified LSN (or the end of the log at that LSN).
+    */
+   private int blockOf(long lsn) {
+      return (int) (lsn / blocksize);
    }
 
    /**
-    * Initialize the bytebuffer and append it to the log file.
+    * Return the page of the ring that holds the specified block.
     */
-   private BlockId appendNewBlock() {
-      BlockId blk = fm.append(logfile);     
-      logpage.setInt(0, fm.blockSize());
-      fm.write(blk, logpage);
-      return blk;
+   private Page page(int blknum) {
+      return ring[blknum % ring.length];
    }
 
    /**
-    * Write the buffer to the log file.
+    * Write the pages of the ring to the log file, and force
+    * the log to disk. Appends go on during the write.
     */
    private void flush() {
-      fm.write(currentblk, logpage);
-      lastSavedLSN = latestLSN;
+      synchronized (writeLock) {
+         syncLog(writeTail());
+      }
+   }
+
+   /**
+    * Write the full pages of the ring that have not been written,
+    * with a single sequential write. A page is full once
+    * a later block holds a published record.
+    */
+   void writeFull() {
+      synchronized (writeLock) {
+         int first = firstUnwritten;
+         int count = blockOf(published.get()) - first;
+         if (count <= 0)
+            return;
+         Page[] pages = new Page[count];
+         for (int i=0; i<count; i++)
+            pages[i] = page(first + i);
+         writeBlocks(first, pages);
+         firstUnwritten = first + count;
+      }
+   }
+
+   /**
+    * Write the full pages of the ring that have not been written
+    * and the last page, without forcing them. The last page is
+    * copied, and the boundary of the copy set to the last published
+    * record, so that records still being copied are left out.
+    * @return the LSN of the last record written
+    */
+   long writeTail() {
+      synchronized (writeLock) {
+         long lsn = published.get();
+         int first = firstUnwritten;
+         int last = blockOf(lsn);
+         tailCopy.copyFrom(page(last));
+         tailCopy.setInt(0, blocksize - (int) (lsn - (long) last * blocksize));
+         Page[] pages = new Page[last - first + 1];
+         for (int i=0; i<pages.length-1; i++)
+            pages[i] = page(first + i);
+         pages[pages.length-1] = tailCopy;
+         writeBlocks(first, pages);
+         firstUnwritten = last;
+         return lsn;
+      }
+   }
+
+   /**
+    * Force the log file to disk, after the records up to
+    * the specified LSN have been written by {@link #writeTail()}.
+    */
+   void syncLog(long lsn) {
+      for (int seg = segmentOf(blockOf(lastSavedLSN)); seg <= segmentOf(blockOf(lsn)); seg++)
+         fm.sync(segmentName(seg));
+      synchronized (writeLock) {
+         lastSavedLSN = Math.max(lastSavedLSN, lsn);
+      }
+   }
+
+   /**
+    * Remove the segments of the log that hold only records before
+    * the specified LSN, which recovery no longer needs.
+    * The data files are forced to disk first, because blocks
+    * written since their last sync may need the removed records.
+    * Removed segments are recycled as spare segments while there are
+    * fewer than LOG_SPARE_SEGMENTS, and deleted after that, unless
+    * LOG_ARCHIVE_DIR is set, in which case they are moved there.
+    * The manifest is changed before any segment is, so a crash
+    * in between at worst leaves unneeded segments behind, which
+    * are removed when the log is next opened.
+    * @param lsn the LSN of the oldest record that recovery needs
+    */
+   public void truncate(long lsn) {
+      int keep = segmentOf(blockOf(lsn));
+      if (keep <= firstSegment)
+         return;
+      fm.syncAll();
+      synchronized (writeLock) {
+         int old = firstSegment;
+         if (keep <= old)
+            return;
+         int spares = lastSegment - segmentOf(blockOf(reserved.get()));
+         int recycled = LOG_ARCHIVE_DIR != null ? 0
+               : Math.max(0, Math.min(keep - old, LOG_SPARE_SEGMENTS - spares));
+         int last = lastSegment;
+         firstSegment = keep;
+         lastSegment += recycled;
+         writeManifest();
+         for (int seg=old; seg<keep; seg++) {
+            String name = segmentName(seg);
+            if (LOG_ARCHIVE_DIR != null)
+               fm.rename(name, LOG_ARCHIVE_DIR + File.separator + name);
+            else if (seg - old < recycled)
+               fm.rename(name, segmentName(++last));
+            else
+               fm.delete(name);
+         }
+      }
+   }
+
+   /**
+    * Return the number of the first block of the log,
+    * which is the first block of its oldest segment.
+    */
+   int firstBlock() {
+      return firstSegment * segmentBlocks;
+   }
+
+   /**
+    * Return the block of a segment file that holds the
+    * specified block of the log.
+    */
+   BlockId blockId(int blknum) {
+      return new BlockId(segmentName(segmentOf(blknum)), blknum % segmentBlocks);
+   }
+
+   private int segmentOf(int blknum) {
+      return blknum / segmentBlocks;
+   }
+
+   /**
+    * Return the file name of a segment. The last name returned
+    * is kept, since nearly every call asks for the segment
+    * being written.
+    */
+   private String segmentName(int segnum) {
+      SegmentName n = lastName;
+      if (n.segnum() == segnum)
+         return n.name();
+      n = new SegmentName(segnum, String.format("%s.%06d.log", segmentBase, segnum));
+      lastName = n;
+      return n.name();
+   }
+
+   /**
+    * Write pages to consecutive blocks of the log, starting at
+    * the specified block, with one write per segment they span.
+    * Each page is stamped with the number of its block
+    * and its checksum.
+    * The segments written, and the one after them,
+    * are allocated before the write if they are not yet.
+    */
+   private void writeBlocks(int first, Page[] pages) {
+      while (segmentOf(first + pages.length - 1) >= lastSegment)
+         addSegment();
+      for (int i=0; i<pages.length; i++) {
+         pages[i].setInt(Integer.BYTES, first + i);
+         pages[i].setInt(2 * Integer.BYTES, checksum(pages[i]));
+      }
+      for (int i=0; i<pages.length; ) {
+         int blknum = first + i;
+         int count = Math.min(pages.length - i, segmentBlocks - blknum % segmentBlocks);
+         BlockId blk = blockId(blknum);
+         fm.writeRange(blk.fileName(), blk.number(), Arrays.copyOfRange(pages, i, i + count));
+         i += count;
+      }
+   }
+
+   /**
+    * Allocate the segment after the last one in full,
+    * and add it to the manifest.
+    */
+   private void addSegment() {
+      String name = segmentName(lastSegment + 1);
+      fm.preallocate(name, segmentBlocks);
+      fm.sync(name);
+      lastSegment++;
+      writeManifest();
+   }
+
+   /**
+    * Remove the segment files that the manifest does not name,
+    * which a crash during {@link #truncate(long)} or {@link #addSegment()}
+    * can leave behind. The segments before the first one that truncate
+    * had not yet removed are archived, or recycled as the spare
+    * segments that the manifest names but that do not exist yet,
+    * or deleted, as truncate would have done. A spare segment that
+    * still does not exist is allocated, and the segments after
+    * the last one are deleted.
+    */
+   private void removeOrphans() {
+      List<Integer> missing = new ArrayList<>();
+      for (int seg=firstSegment+1; seg<=lastSegment; seg++)
+         if (!fm.exists(segmentName(seg)))
+            missing.add(seg);
+      // truncate removes segments oldest first, so the ones left are together
+      int oldest = firstSegment;
+      while (oldest > 0 && fm.exists(segmentName(oldest - 1)))
+         oldest--;
+      for (int seg=oldest; seg<firstSegment; seg++) {
+         String name = segmentName(seg);
+         if (LOG_ARCHIVE_DIR != null)
+            fm.rename(name, LOG_ARCHIVE_DIR + File.separator + name);
+         else if (!missing.isEmpty())
+            fm.rename(name, segmentName(missing.remove(0)));
+         else
+            fm.delete(name);
+      }
+      for (int seg : missing) {
+         fm.preallocate(segmentName(seg), segmentBlocks);
+         fm.sync(segmentName(seg));
+      }
+      for (int seg=lastSegment+1; fm.exists(segmentName(seg)); seg++)
+         fm.delete(segmentName(seg));
+   }
+
+   /**
+    * Return the number of the last block of the log: the block before
+    * the first one, from the start of the log, that is not stamped with
+    * its own number or does not match its checksum. Blocks past the end
+    * of the log hold zeros, or the blocks they held before their segment
+    * was recycled. A write that was not forced may have reached the
+    * disk only in part, so a block of the log may be missing while a
+    * later one is not; the later blocks are zeroed, since they would
+    * otherwise seem to continue the log once the missing block is
+    * written again.
+    */
+   private int lastBlock() {
+      Page[] pages = new Page[segmentBlocks];
+      for (int i=0; i<pages.length; i++)
+         pages[i] = new Page(new byte[blocksize]);
+      int end = -1;
+      List<Integer> stale = new ArrayList<>();
+      for (int seg=firstSegment; seg<=lastSegment; seg++) {
+         fm.readRange(segmentName(seg), 0, pages);
+         for (int i=0; i<pages.length; i++) {
+            int blknum = seg * segmentBlocks + i;
+            if (end < 0 && !isWritten(blknum, pages[i]))
+               end = blknum - 1;
+            else if (end >= 0 && pages[i].getInt(Integer.BYTES) == blknum)
+               stale.add(blknum);
+         }
+      }
+      if (!stale.isEmpty()) {
+         Page zeros = new Page(new byte[blocksize]);
+         for (int blknum : stale)
+            fm.write(blockId(blknum), zeros);
+         for (int seg=segmentOf(stale.get(0)); seg<=lastSegment; seg++)
+            fm.sync(segmentName(seg));
+      }
+      if (end < 0) // every block allocated is written
+         end = (lastSegment + 1) * segmentBlocks - 1;
+      return Math.max(end, firstBlock());
+   }
+
+   private boolean isWritten(int blknum, Page p) {
+      int boundary = p.getInt(0);
+      return p.getInt(Integer.BYTES) == blknum && boundary >= HEADER_SIZE && boundary <= blocksize
+            && p.getInt(2 * Integer.BYTES) == checksum(p);
+   }
+
+   /**
+    * Return the checksum of a log page, computed with the
+    * checksum field of the header set to zero.
+    */
+   private static int checksum(Page p) {
+      int saved = p.getInt(2 * Integer.BYTES);
+      p.setInt(2 * Integer.BYTES, 0);
+      int crc = p.checksum();
+      p.setInt(2 * Integer.BYTES, saved);
+      return crc;
+   }
+
+   private void readManifest() {
+      Page p = new Page(new byte[blocksize]);
+      fm.read(new BlockId(manifest, 0), p);
+      segmentBlocks = p.getInt(0);
+      firstSegment = p.getInt(Integer.BYTES);
+      lastSegment = p.getInt(2 * Integer.BYTES);
+      if (p.getInt(3 * Integer.BYTES) != FORMAT)
+         throw new RuntimeException("the log " + logfile + " has blocks without checksums; it was written by "
+               + "an older version. Recover the database with that version and remove its log files "
+               + "before opening it with this one");
+   }
+
+   private void writeManifest() {
+      Page p = new Page(new byte[blocksize]);
+      p.setInt(0, segmentBlocks);
+      p.setInt(Integer.BYTES, firstSegment);
+      p.setInt(2 * Integer.BYTES, lastSegment);
+      p.setInt(3 * Integer.BYTES, FORMAT);
+      fm.write(new BlockId(manifest, 0), p);
+      fm.sync(manifest);
    }
 }
@@ -0,0 +1,59 @@
+package simpledb.log;
+
+import java.util.Iterator;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class LogRingTest {
+   public static void main(String[] args) {
+      LogMgr.LOG_BUFFERS = 3;
+      SimpleDB db = new SimpleDB("logringtest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      LogMgr lm = db.logMgr();
+      String logfile = SimpleDB.LOG_FILE;
+
+      // a block holds 7 records, so 20 records fill 2 blocks
+      // and start a third; the full ones stay in the ring
+      int writesBefore = fm.getStatistics().blksWritten();
+      append(lm, 1, 20);
+      System.out.println("blocks written by 20 appends: "
+            + (fm.getStatistics().blksWritten() - writesBefore) + " (expected 0)");
+
+      // 120 records fill 17 blocks; each time the ring is full,
+      // its 2 full blocks are written with one write
+      append(lm, 21, 120);
+      int written = fm.getStatistics().blksWritten() - writesBefore;
+      System.out.println("blocks written by 120 appends: " + written
+            + " (expected 16)");
+      System.out.println("records in the log: " + check(lm, 120) + " (expected 120 in reverse order)");
+
+      // a restarted log manager goes on after the last record
+      lm.flush(lm.latestLSN());
+      lm = new LogMgr(fm, logfile);
+      append(lm, 121, 150);
+      System.out.println("records after a restart: " + check(lm, 150) + " (expected 150 in reverse order)");
+   }
+
+   private static void append(LogMgr lm, int first, int last) {
+      for (int i=first; i<=last; i++) {
+         byte[] rec = new byte[48];
+         new Page(rec).setInt(0, i);
+         lm.append(rec);
+      }
+   }
+
+   /**
+    * Count the records in the log that follow from the last one
+    * in reverse order, stopping at the first that does not.
+    */
+   private static int check(LogMgr lm, int last) {
+      int expected = last;
+      for (Iterator<byte[]> iter = lm.iterator(); iter.hasNext(); ) {
+         Page p = new Page(iter.next());
+         if (p.getInt(0) != expected)
+            break;
+         expected--;
+      }
+      return last - expected;
+   }
+}
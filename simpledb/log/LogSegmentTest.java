@@ -0,0 +1,127 @@
+package simpledb.log;
+
+import java.io.File;
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class LogSegmentTest {
+   private static final String DIRNAME = "logsegmenttest";
+
+   public static void main(String[] args) {
+      LogMgr.LOG_SEGMENT_BLOCKS = 4;
+      LogMgr.LOG_SPARE_SEGMENTS = 2;
+      SimpleDB db = new SimpleDB(DIRNAME, 400, 8);
+      FileMgr fm = db.fileMgr();
+      LogMgr lm = db.logMgr();
+
+      // a block holds 7 records, so 100 records fill segments 0 to 3,
+      // and segment 4 is allocated ahead of time
+      long[] lsns = new long[201];
+      append(lm, lsns, 1, 100);
+      lm.flush(lsns[100]);
+      System.out.println("segments: " + segments(DIRNAME) + " (expected 0 to 4)");
+      System.out.println("segments of full size: " + fullSize(fm) + " (expected true)");
+
+      // record 60 is in block 8, the first of segment 2; segment 0
+      // becomes spare segment 5, and segment 1 is deleted
+      lm.truncate(lsns[60]);
+      System.out.println("segments after truncation: " + segments(DIRNAME) + " (expected 2 to 5)");
+      System.out.println("records in the log: " + check(lm, 100) + " (expected 44, down to 57)");
+
+      // the recycled segment's old blocks are not taken for the log's
+      lm = new LogMgr(fm, SimpleDB.LOG_FILE);
+      append(lm, lsns, 101, 170);
+      lm.flush(lsns[170]);
+      lm = new LogMgr(fm, SimpleDB.LOG_FILE);
+      System.out.println("records after restarts: " + check(lm, 170) + " (expected 114, down to 57)");
+      System.out.println("segments: " + segments(DIRNAME) + " (expected 2 to 7)");
+      System.out.println("segments of full size: " + fullSize(fm) + " (expected true)");
+
+      // archived segments are moved instead of recycled
+      LogMgr.LOG_ARCHIVE_DIR = "archive";
+      lm.truncate(lm.latestLSN());
+      System.out.println("segments after archiving: " + segments(DIRNAME) + " (expected 6 and 7)");
+      System.out.println("archived: " + segments(DIRNAME + File.separator + "archive") + " (expected 2 to 5)");
+      System.out.println("records in the log: " + check(lm, 170) + " (expected 2, down to 169)");
+      LogMgr.LOG_ARCHIVE_DIR = null;
+
+      // a crash during a truncation can leave an old segment behind,
+      // and one while a segment is added can leave a segment that the
+      // manifest does not name; the old one takes the place of spare
+      // segment 7, which the truncation had not recycled yet
+      fm.delete("simpledb.000007.log");
+      fm.preallocate("simpledb.000005.log", LogMgr.LOG_SEGMENT_BLOCKS);
+      fm.preallocate("simpledb.000008.log", LogMgr.LOG_SEGMENT_BLOCKS);
+      lm = new LogMgr(fm, SimpleDB.LOG_FILE);
+      System.out.println("segments after a crash: " + segments(DIRNAME) + " (expected 6 and 7)");
+      System.out.println("segments of full size: " + fullSize(fm) + " (expected true)");
+      System.out.println("records in the log: " + check(lm, 170) + " (expected 2, down to 169)");
+
+      // records 171 to 175 fill block 24, and the next ones go in blocks
+      // 25 to 28, the first of segment 7; if block 27 is lost in a crash,
+      // the log ends at block 26, and the blocks after the lost one,
+      // even in the next segment, are zeroed
+      append(lm, lsns, 171, 200);
+      lm.flush(lsns[200]);
+      Page p = new Page(new byte[fm.blockSize("simpledb.000006.log")]);
+      fm.write(new BlockId("simpledb.000006.log", 3), p);
+      lm = new LogMgr(fm, SimpleDB.LOG_FILE);
+      System.out.println("records after a lost block: " + check(lm, 189) + " (expected 21, down to 169)");
+      fm.read(new BlockId("simpledb.000007.log", 0), p);
+      System.out.println("block after the lost one zeroed: " + (p.getInt(Integer.BYTES) == 0) + " (expected true)");
+
+      // a log kept in one file, without segments, is refused
+      fm.write(new BlockId("old.log", 0), new Page(new byte[fm.blockSize("old.log")]));
+      boolean refused = false;
+      try {
+         new LogMgr(fm, "old.log");
+      } catch (RuntimeException e) {
+         refused = true;
+      }
+      System.out.println("single-file log refused: " + refused + " (expected true)");
+   }
+
+   private static void append(LogMgr lm, long[] lsns, int first, int last) {
+      for (int i=first; i<=last; i++) {
+         byte[] rec = new byte[48];
+         new Page(rec).setInt(0, i);
+         lsns[i] = lm.append(rec);
+      }
+   }
+
+   /**
+    * Count the records in the log that follow from the last one
+    * in reverse order, stopping at the first that does not.
+    */
+   private static int check(LogMgr lm, int last) {
+      int expected = last;
+      for (Iterator<byte[]> iter = lm.iterator(); iter.hasNext(); ) {
+         Page p = new Page(iter.next());
+         if (p.getInt(0) != expected)
+            break;
+         expected--;
+      }
+      return last - expected;
+   }
+
+   /**
+    * Return the numbers of the segment files in the directory.
+    */
+   private static List<Integer> segments(String dirname) {
+      List<Integer> segs = new ArrayList<>();
+      for (String name : new File(dirname).list())
+         if (name.matches("simpledb\\.\\d+\\.log"))
+            segs.add(Integer.parseInt(name.split("\\.")[1]));
+      Collections.sort(segs);
+      return segs;
+   }
+
+   private static boolean fullSize(FileMgr fm) {
+      for (String name : new File(DIRNAME).list())
+         if (name.matches("simpledb\\.\\d+\\.log")
+               && new File(DIRNAME, name).length() != (long) LogMgr.LOG_SEGMENT_BLOCKS * fm.blockSize(name))
+            return false;
+      return true;
+   }
+}
@@ -16,7 +16,7 @@ public class LogTest {
       createRecords(1, 35);
       printLogRecords("The log file now has these records:");
       createRecords(36, 70);
-      lm.flush(65);
+      lm.flush(lm.latestLSN());
       printLogRecords("The log file now has these records:");
    }
 
@@ -38,7 +38,7 @@ public class LogTest {
       System.out.print("Creating records: ");
       for (int i=start; i<=end; i++) {
          byte[] rec = createLogRecord("record"+i, i+100);
-         int lsn = lm.append(rec);
+         long lsn = lm.append(rec);
          System.out.print(lsn + " ");
       }
       System.out.println();
@@ -0,0 +1,144 @@
+package simpledb.log;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The thread that forces the log to disk for group commit.
+ * A thread that needs a log record on disk, such as a committing
+ * transaction, queues its lsn and parks; the writer waits for the
+ * batching window, so that more requests can join the batch, then
+ * writes the tail of the log and forces it once for every queued
+ * request, and wakes the requests it covered.
+ * Between requests, the writer writes the pages of the log
+ * that fill up, so that appends seldom find the ring of pages full.
+ */
+class LogWriter extends Thread {
+   private final LogMgr lm;
+   private final long windowNanos;
+   private final ArrayDeque<Request> queue = new ArrayDeque<>();
+   private boolean filled = false; // a page of the log has filled up
+   private final LongAdder syncs = new LongAdder();
+   private final LongAdder requests = new LongAdder();
+
+   /**
+    * A thread waiting for its lsn to be on disk.
+    */
+   private static class Request {
+      final long lsn;
+      final Thread thread = Thread.currentThread();
+      volatile boolean done = false;
+      volatile RuntimeException error;
+
+      Request(long lsn) {
+         this.lsn = lsn;
+      }
+   }
+
+   /**
+    * @param lm the log manager whose log is forced
+    * @param windowMicros the time the writer waits for more requests
+    *        after the first one arrives, in microseconds
+    */
+   LogWriter(LogMgr lm, long windowMicros) {
+      super("log writer");
+      setDaemon(true);
+      this.lm = lm;
+      this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+   }
+
+   /**
+    * Wait until the log record of the specified lsn is on disk.
+    */
+   void await(long lsn) {
+      Request r = new Request(lsn);
+      synchronized (this) {
+         queue.add(r);
+         if (queue.size() == 1)
+            notify();
+      }
+      boolean interrupted = false;
+      while (!r.done) {
+         LockSupport.park(this);
+         if (Thread.interrupted())
+            interrupted = true;
+      }
+      if (interrupted)
+         Thread.currentThread().interrupt();
+      if (r.error != null)
+         throw r.error;
+   }
+
+   /**
+    * Write the full pages of the log soon, because a page has filled up.
+    */
+   synchronized void pageFilled() {
+      filled = true;
+      notify();
+   }
+
+   public void run() {
+      while (true) {
+         boolean requested;
+         synchronized (this) {
+            while (queue.isEmpty() && !filled) {
+               try {
+                  wait();
+               } catch (InterruptedException e) {
+                  return;
+               }
+            }
+            requested = !queue.isEmpty();
+            filled = false;
+         }
+         if (!requested) {
+            try {
+               lm.writeFull();
+            } catch (RuntimeException e) {
+               // the pages stay in the ring, and the next write retries them
+            }
+            continue;
+         }
+         if (windowNanos > 0)
+            LockSupport.parkNanos(windowNanos);
+         long flushed;
+         RuntimeException error = null;
+         try {
+            flushed = lm.writeTail();
+            lm.syncLog(flushed);
+            syncs.increment();
+         } catch (RuntimeException e) {
+            flushed = Long.MAX_VALUE; // fail every queued request
+            error = e;
+         }
+         synchronized (this) {
+            for (Iterator<Request> iter = queue.iterator(); iter.hasNext(); ) {
+               Request r = iter.next();
+               if (r.lsn <= flushed) {
+                  iter.remove();
+                  requests.increment();
+                  r.error = error;
+                  r.done = true;
+                  LockSupport.unpark(r.thread);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Return the number of times the writer has forced the log.
+    */
+   long syncs() {
+      return syncs.sum();
+   }
+
+   /**
+    * Return the number of requests the writer has served.
+    */
+   long requests() {
+      return requests.sum();
+   }
+}
@@ -4,9 +4,27 @@ package simpledb.multibuffer;
  * A class containing static methods,
  * which estimate the optimal number of buffers
  * to allocate for a scan.
+ * The number of available buffers they are given should be
+ * a reservation from {@link simpledb.buffer.BufferMgr#reserve(int, int)},
+ * which the scans of other transactions cannot also count on;
+ * a plan estimating its cost uses the number that could be reserved,
+ * {@link simpledb.tx.Transaction#reservableBuffs()}.
  * @author Edward Sciore
  */
 public class BufferNeeds {
+   /**
+    * Returns the most buffers a scan should reserve when the
+    * specified number are reservable: half of them, so that a scan
+    * opened while another of its transaction holds a reservation,
+    * as in a product of three or more tables, can still reserve
+    * its own, but at least the three a multibuffer product needs.
+    * @param reservable the number of buffers that could be reserved
+    * @return the most buffers to reserve
+    */
+   public static int reservationLimit(int reservable) {
+      return Math.max(3, reservable / 2);
+   }
+   
    /**
     * This method considers the various roots
     * of the specified output size (in blocks),
@@ -33,6 +33,7 @@ public class ChunkScan implements Scan {
       this.layout = layout;
       this.startbnum = startbnum;
       this.endbnum   = endbnum;
+      tx.prefetch(filename, startbnum, endbnum - startbnum + 1);
       for (int i=startbnum; i<=endbnum; i++) {
          BlockId blk = new BlockId(filename, i);
          buffs.add(new RecordPage(tx, blk, layout));
@@ -35,7 +35,7 @@ public class MultibufferProductPlan implements Plan {
     * First, the method materializes its LHS and RHS queries.
     * It then determines the optimal chunk size,
     * based on the size of the materialized RHS file and the
-    * number of available buffers.
+    * number of buffers the scan reserves.
     * It creates a chunk plan for each chunk, saving them in a list.
     * Finally, it creates a multiscan for this list of plans,
     * and returns that scan.
@@ -52,16 +52,17 @@ public class MultibufferProductPlan implements Plan {
     * required to execute the query. The formula is:
     * <pre> B(product(p1,p2)) = B(p2) + B(p1)*C(p2) </pre>
     * where C(p2) is the number of chunks of p2.
-    * The method uses the current number of available buffers
-    * to calculate C(p2), and so this value may differ
-    * when the query scan is opened.
+    * The method calculates C(p2) the way the scan chooses its
+    * chunks, from the buffers the scan would reserve now,
+    * but at least the three it waits for;
+    * the scan may get a different number when it is opened.
     * @see simpledb.plan.Plan#blocksAccessed()
     */
    public int blocksAccessed() {
-      // this guesses at the # of chunks
-      int avail = tx.availableBuffs();
       int size = new MaterializePlan(tx, rhs).blocksAccessed();
-      int numchunks = size / avail;
+      int avail = Math.min(BufferNeeds.reservationLimit(tx.reservableBuffs()), size + 2);
+      int chunksize = Math.max(1, BufferNeeds.bestFactor(avail, size));
+      int numchunks = (size + chunksize - 1) / chunksize;
       return rhs.blocksAccessed() +
             (lhs.blocksAccessed() * numchunks);
    }
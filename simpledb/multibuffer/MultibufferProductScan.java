@@ -15,10 +15,16 @@ public class MultibufferProductScan implements Scan {
    private String filename;
    private Layout layout;
    private int chunksize, nextblknum, filesize;
+   private int reserved;
    
    
    /**
     * Creates the scan class for the product of the LHS scan and a table.
+    * The buffers for the chunks are reserved first, so the chunk size
+    * does not count on buffers that other scans are about to use;
+    * the scan waits if too few can be reserved. It reserves no more
+    * than {@link BufferNeeds#reservationLimit(int)}, so that another
+    * scan opened while this one is open can reserve its own.
     * @param lhsscan the LHS scan
     * @param layout the metadata for the RHS table
     * @param tx the current transaction
@@ -29,8 +35,10 @@ public class MultibufferProductScan implements Scan {
       this.filename = tblname + ".tbl";
       this.layout = layout;
       filesize = tx.size(filename);
-      int available = tx.availableBuffs();
-      chunksize = BufferNeeds.bestFactor(available, filesize);
+      // one buffer for a chunk, and the two that bestFactor keeps back
+      int max = Math.min(filesize + 2, BufferNeeds.reservationLimit(tx.reservableBuffs()));
+      reserved = tx.reserveBuffers(3, max);
+      chunksize = BufferNeeds.bestFactor(reserved, filesize);
       beforeFirst();
    }
    
@@ -61,11 +69,13 @@ public class MultibufferProductScan implements Scan {
    }
    
    /**
-    * Closes the current scans.
+    * Closes the current scans, and releases the reserved buffers.
     * @see simpledb.query.Scan#close()
     */
    public void close() {
       prodscan.close();
+      tx.releaseBuffers(reserved);
+      reserved = 0;
    }
    
    /** 
@@ -0,0 +1,58 @@
+package simpledb.multibuffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.buffer.BufferAbortException;
+import simpledb.buffer.BufferMgr;
+import simpledb.metadata.MetadataMgr;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+import simpledb.tx.Transaction;
+
+public class NestedProductTest {
+   public static void main(String[] args) {
+      SimpleDB.BUFFER_SIZE = 12;
+      SimpleDB db = new SimpleDB("nestedproducttest");
+      Transaction tx = db.newTx();
+      Planner planner = db.planner();
+      MetadataMgr mdm = db.mdMgr();
+      load(planner, tx, "T1", "A", 200);
+      load(planner, tx, "T2", "B", 600);
+      load(planner, tx, "T3", "C", 3);
+      BufferMgr.MAX_TIME = 500;
+
+      // a product scan is open while a second one opens,
+      // as the inner scan of a nested product is; the second
+      // reserves its buffers without waiting for the first
+      Scan inner = new MultibufferProductPlan(tx, new TablePlan(tx, "t3", mdm), new TablePlan(tx, "t2", mdm)).open();
+      try {
+         Scan outer = new MultibufferProductPlan(tx, new TablePlan(tx, "t3", mdm), new TablePlan(tx, "t1", mdm)).open();
+         int count = 0;
+         while (outer.next())
+            count++;
+         outer.close();
+         System.out.println("second product opened, records: " + count + " (expected 600)");
+      } catch (BufferAbortException e) {
+         System.out.println("second product timed out (expected it to open)");
+      }
+      int count = 0;
+      while (inner.next())
+         count++;
+      inner.close();
+      System.out.println("first product records: " + count + " (expected 1800)");
+
+      // a product of three tables without an index
+      Scan s = planner.createQueryPlan("select A, B, C from T1, T2, T3 where A = B", tx).open();
+      count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      System.out.println("three-table product records: " + count + " (expected 600)");
+      tx.commit();
+   }
+
+   private static void load(Planner planner, Transaction tx, String tblname, String fldname, int n) {
+      planner.executeUpdate("create table " + tblname + "(" + fldname + " int)", tx);
+      for (int i = 0; i < n; i++)
+         planner.executeUpdate("insert into " + tblname + "(" + fldname + ") values(" + i + ")", tx);
+   }
+}
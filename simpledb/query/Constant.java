@@ -1,5 +1,7 @@
 package simpledb.query;
 
+import simpledb.file.Page;
+
 /**
  * The class that denotes values stored in the database.
  * @author Edward Sciore
@@ -7,6 +9,7 @@ package simpledb.query;
 public class Constant implements Comparable<Constant> {
    private Integer ival = null;
    private String  sval = null;
+   private byte[]  sbytes = null;
    
    public Constant(Integer ival) {
       this.ival = ival;
@@ -23,6 +26,17 @@ public class Constant implements Comparable<Constant> {
    public String asString() {
       return sval;
    }
+
+   /**
+    * Return the string value encoded as it is stored in a page,
+    * for comparing it with page contents in place.
+    * The encoding is computed once, on first use.
+    */
+   public byte[] asBytes() {
+      if (sbytes == null)
+         sbytes = sval.getBytes(Page.CHARSET);
+      return sbytes;
+   }
    
    public boolean equals(Object obj) {
       Constant c = (Constant) obj;
@@ -0,0 +1,66 @@
+package simpledb.query;
+
+import java.io.File;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.record.*;
+
+/**
+ * Times a selection on a string field over a table scan.
+ * The "before" loop evaluates the term the old way, creating a
+ * Constant (and so a String) for every record; the "after" loop
+ * uses a SelectScan, whose term compares the field in place.
+ */
+public class PredicateBenchmark {
+   private static final int NUM_RECORDS = 100000;
+   private static final int ROUNDS = 5;
+
+   public static void main(String[] args) {
+      deleteDirectory(new File("predicatetest"));
+      SimpleDB db = new SimpleDB("predicatetest", 4096, 256);
+      Transaction tx = db.newTx();
+
+      Schema sch = new Schema();
+      sch.addIntField("A");
+      sch.addStringField("B", 12);
+      Layout layout = new Layout(sch);
+      TableScan ts = new TableScan(tx, "T", layout);
+      for (int i=0; i<NUM_RECORDS; i++) {
+         ts.insert();
+         ts.setInt("A", i);
+         ts.setString("B", "rec" + (i % 1000));
+      }
+      ts.close();
+
+      Constant c = new Constant("rec123");
+      Predicate pred = new Predicate(new Term(new Expression("B"), new Expression(c)));
+      for (int round=0; round<ROUNDS; round++) {
+         long start = System.nanoTime();
+         Scan s = new TableScan(tx, "T", layout);
+         int before = 0;
+         while (s.next())
+            if (c.equals(s.getVal("B")))
+               before++;
+         s.close();
+         long mid = System.nanoTime();
+         s = new SelectScan(new TableScan(tx, "T", layout), pred);
+         int after = 0;
+         while (s.next())
+            after++;
+         s.close();
+         long end = System.nanoTime();
+         System.out.printf("round %d: before %d matches, %.0f ns/record; after %d matches, %.0f ns/record%n",
+               round, before, (double) (mid - start) / NUM_RECORDS, after, (double) (end - mid) / NUM_RECORDS);
+      }
+      tx.commit();
+   }
+
+   private static void deleteDirectory(File dir) {
+      File[] files = dir.listFiles();
+      if (files == null)
+         return;
+      for (File f : files)
+         f.delete();
+      dir.delete();
+   }
+}
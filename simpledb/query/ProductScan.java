@@ -88,6 +88,13 @@ public class ProductScan implements Scan {
          return s2.getVal(fldname);
    }
 
+   public boolean fieldEquals(String fldname, Constant val) {
+      if (s1.hasField(fldname))
+         return s1.fieldEquals(fldname, val);
+      else
+         return s2.fieldEquals(fldname, val);
+   }
+
    /**
     * Returns true if the specified field is in
     * either of the underlying scans.
@@ -53,6 +53,13 @@ public class ProjectScan implements Scan {
          throw new RuntimeException("field " + fldname + " not found.");
    }
 
+   public boolean fieldEquals(String fldname, Constant val) {
+      if (hasField(fldname))
+         return s.fieldEquals(fldname, val);
+      else
+         throw new RuntimeException("field " + fldname + " not found.");
+   }
+
    public boolean hasField(String fldname) {
       return fieldlist.contains(fldname);
    }
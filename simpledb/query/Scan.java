@@ -43,6 +43,18 @@ public interface Scan {
     * @return the value of that field, expressed as a Constant.
     */
    public Constant getVal(String fldname);
+
+   /**
+    * Return true if the specified field of the current record
+    * has the specified value. Scans that can compare the value
+    * in place, without creating a Constant, override this method.
+    * @param fldname the name of the field
+    * @param val the value to compare with
+    * @return true if the field has that value
+    */
+   public default boolean fieldEquals(String fldname, Constant val) {
+      return val.equals(getVal(fldname));
+   }
    
    /**
     * Return true if the scan has the specified field.
@@ -30,6 +30,10 @@ public class Term {
     * @return true if both expressions have the same value in the scan
     */
    public boolean isSatisfied(Scan s) {
+      if (lhs.isFieldName() && !rhs.isFieldName())
+         return s.fieldEquals(lhs.asFieldName(), rhs.asConstant());
+      if (rhs.isFieldName() && !lhs.isFieldName())
+         return s.fieldEquals(rhs.asFieldName(), lhs.asConstant());
       Constant lhsval = lhs.evaluate(s);
       Constant rhsval = rhs.evaluate(s);
       return rhsval.equals(lhsval);
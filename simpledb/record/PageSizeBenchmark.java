@@ -0,0 +1,70 @@
+package simpledb.record;
+
+import java.io.File;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+
+/**
+ * Measures insert and scan throughput of a table
+ * for several block sizes. Each block size uses a new database,
+ * whose log has the same block size as its data file.
+ */
+public class PageSizeBenchmark {
+   private static final int[] BLOCK_SIZES = {400, 4096, 8192, 16384, 32768, 65536};
+   private static final int NUM_RECORDS = 50000;
+   private static final int NUM_BUFFERS = 64;
+
+   public static void main(String[] args) {
+      System.out.println("blocksize  blocks  inserts/sec    scans/sec  blksRead");
+      for (int blocksize : BLOCK_SIZES) {
+         String dirname = "pagesizetest" + blocksize;
+         deleteDirectory(new File(dirname));
+         SimpleDB db = new SimpleDB(dirname, blocksize, NUM_BUFFERS);
+
+         Schema sch = new Schema();
+         sch.addIntField("A");
+         sch.addStringField("B", 20);
+         Layout layout = new Layout(sch);
+
+         Transaction tx = db.newTx();
+         long start = System.nanoTime();
+         TableScan ts = new TableScan(tx, "T", layout);
+         for (int i=0; i<NUM_RECORDS; i++) {
+            ts.insert();
+            ts.setInt("A", i);
+            ts.setString("B", "rec" + i);
+         }
+         ts.close();
+         tx.commit();
+         double insertSecs = (System.nanoTime() - start) / 1e9;
+
+         tx = db.newTx();
+         int blocks = tx.size("T.tbl");
+         int before = db.fileMgr().getStatistics().blksRead();
+         start = System.nanoTime();
+         ts = new TableScan(tx, "T", layout);
+         int count = 0;
+         while (ts.next()) {
+            ts.getInt("A");
+            ts.getString("B");
+            count++;
+         }
+         ts.close();
+         tx.commit();
+         double scanSecs = (System.nanoTime() - start) / 1e9;
+         int read = db.fileMgr().getStatistics().blksRead() - before;
+
+         System.out.printf("%9d %7d %12.0f %12.0f %9d%n", blocksize, blocks,
+               NUM_RECORDS / insertSecs, count / scanSecs, read);
+      }
+   }
+
+   private static void deleteDirectory(File dir) {
+      File[] files = dir.listFiles();
+      if (files == null)
+         return;
+      for (File f : files)
+         f.delete();
+      dir.delete();
+   }
+}
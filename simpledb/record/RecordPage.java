@@ -47,6 +47,19 @@ public class RecordPage {
         return tx.getString(blk, fldpos);
     }
 
+    /**
+     * Compare the string value stored for the specified field
+     * of the specified slot with an encoded key, in place.
+     *
+     * @param fldname the name of the field.
+     * @param key     the key, encoded as by {@link Page#CHARSET}
+     * @return the sign of the comparison, as for {@link Page#compareString}
+     */
+    public int compareString(int slot, String fldname, byte[] key) {
+        int fldpos = offset(slot) + layout.offset(fldname);
+        return tx.compareString(blk, fldpos, key);
+    }
+
     /**
      * Store an integer at the specified field
      * of the specified slot.
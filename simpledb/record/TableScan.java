@@ -11,6 +11,12 @@ import simpledb.tx.Transaction;
  * @author sciore
  */
 public class TableScan implements UpdateScan {
+   /**
+    * The number of blocks read ahead when a scan moves
+    * sequentially through the table; 0 turns read-ahead off.
+    */
+   public static int PREFETCH_BLOCKS = 8;
+
    private Transaction tx;
    private Layout layout;
    private RecordPage rp;
@@ -38,7 +44,10 @@ public class TableScan implements UpdateScan {
       while (currentslot < 0) {
          if (atLastBlock())
             return false;
-         moveToBlock(rp.block().number()+1);
+         int nextblk = rp.block().number()+1;
+         if (PREFETCH_BLOCKS > 0 && (nextblk - 1) % PREFETCH_BLOCKS == 0)
+            prefetch(nextblk);
+         moveToBlock(nextblk);
          currentslot = rp.nextAfter(currentslot);
       }
       return true;
@@ -59,6 +68,14 @@ public class TableScan implements UpdateScan {
          return new Constant(getString(fldname));
    }
 
+   public boolean fieldEquals(String fldname, Constant val) {
+      boolean isint = val.asString() == null;
+      if (layout.schema().type(fldname) == INTEGER)
+         return isint && getInt(fldname) == val.asInt();
+      else
+         return !isint && rp.compareString(currentslot, fldname, val.asBytes()) == 0;
+   }
+
    public boolean hasField(String fldname) {
       return layout.schema().hasField(fldname);
    }
@@ -128,6 +145,17 @@ public class TableScan implements UpdateScan {
       currentslot = -1;
    }
 
+   /**
+    * Read ahead the next window of blocks, starting at the
+    * specified block. Only half of the unpinned buffers are used,
+    * so that a scan does not push every other page out of the pool.
+    */
+   private void prefetch(int blknum) {
+      int count = Math.min(PREFETCH_BLOCKS, tx.size(filename) - blknum);
+      count = Math.min(count, tx.availableBuffs() / 2);
+      tx.prefetch(filename, blknum, count);
+   }
+
    private boolean atLastBlock() {
       return rp.block().number() == tx.size(filename) - 1;
    }
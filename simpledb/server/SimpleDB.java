@@ -1,6 +1,7 @@
 package simpledb.server;
 
 import java.io.File;
+import simpledb.file.AsyncFileMgr;
 import simpledb.file.FileMgr;
 import simpledb.log.LogMgr;
 import simpledb.buffer.BufferMgr;
@@ -17,10 +18,19 @@ import simpledb.opt.HeuristicQueryPlanner;
  */
 public class SimpleDB {
    public static int BLOCK_SIZE = 400;
+   public static int LOG_BLOCK_SIZE = 0; // 0 means the log uses BLOCK_SIZE
    public static int BUFFER_SIZE = 8;
-   public static String LOG_FILE = "simpledb.log";
+   public static String LOG_FILE = "simpledb.log"; // the log is kept in segment files simpledb.000000.log, ...
+   public static int IO_THREADS = 0; // 0 means the buffer manager does its I/O synchronously
+   public static String REPLACEMENT = "lru"; // or "clock" or "2q"
+   public static int CLEANER_TARGET = 0; // clean victims kept ready; 0 means no background cleaner
+   public static long CLEANER_INTERVAL = 10; // milliseconds between cleaner passes
+   public static long GROUP_COMMIT_WINDOW = -1; // microseconds a log force waits for more commits; -1 means no log writer
+   public static String BUFFER_DUMP_FILE = "buffers.dump"; // the resident blocks, read back at startup
+   public static long BUFFER_DUMP_INTERVAL = 0; // milliseconds between saves; 0 means no saves or warm-up
 
    private  FileMgr     fm;
+   private  AsyncFileMgr afm;
    private  BufferMgr   bm;
    private  LogMgr      lm;
    private  MetadataMgr mdm;
@@ -33,19 +43,43 @@ public class SimpleDB {
     * @param buffsize the number of buffers
     */
    public SimpleDB(String dirname, int blocksize, int buffsize) {
+      this(dirname, blocksize, blocksize, buffsize);
+   }
+
+   /**
+    * A constructor that gives the log its own block size.
+    * The block sizes only apply when the database is created;
+    * an existing database keeps the sizes saved in its header.
+    * @param dirname the name of the database directory
+    * @param blocksize the block size of data and index files
+    * @param logblocksize the block size of the log file
+    * @param buffsize the number of buffers
+    */
+   public SimpleDB(String dirname, int blocksize, int logblocksize, int buffsize) {
       File dbDirectory = new File(dirname);
-      fm = new FileMgr(dbDirectory, blocksize);
+      fm = new FileMgr(dbDirectory, blocksize, logblocksize);
       lm = new LogMgr(fm, LOG_FILE);
-      bm = new BufferMgr(fm, lm, buffsize); 
+      if (GROUP_COMMIT_WINDOW >= 0)
+         lm.startWriter(GROUP_COMMIT_WINDOW);
+      if (IO_THREADS > 0)
+         afm = new AsyncFileMgr(fm, IO_THREADS);
+      bm = new BufferMgr(fm, lm, buffsize, afm, REPLACEMENT);
+      bm.stats().register(dbDirectory.getName());
+      if (CLEANER_TARGET > 0)
+         bm.startCleaner(CLEANER_TARGET, CLEANER_INTERVAL);
    }
    
    /**
     * A simpler constructor for most situations. Unlike the
     * 3-arg constructor, it also initializes the metadata tables.
+    * If BUFFER_DUMP_INTERVAL is set, it then starts reading the blocks
+    * that were resident in the buffer pool before the restart back
+    * into it, in the background, and saving the resident blocks
+    * periodically.
     * @param dirname the name of the database directory
     */
    public SimpleDB(String dirname) {
-      this(dirname, BLOCK_SIZE, BUFFER_SIZE); 
+      this(dirname, BLOCK_SIZE, LOG_BLOCK_SIZE > 0 ? LOG_BLOCK_SIZE : BLOCK_SIZE, BUFFER_SIZE);
       Transaction tx = newTx();
       boolean isnew = fm.isNew();
       if (isnew)
@@ -61,6 +95,12 @@ public class SimpleDB {
 //    UpdatePlanner up = new IndexUpdatePlanner(mdm);
       planner = new Planner(qp, up);
       tx.commit();
+      if (BUFFER_DUMP_INTERVAL > 0) {
+         File dumpfile = new File(dirname, BUFFER_DUMP_FILE);
+         if (!isnew)
+            bm.warmUp(dumpfile);
+         bm.startDumping(dumpfile, BUFFER_DUMP_INTERVAL);
+      }
    }
    
    /**
@@ -83,6 +123,9 @@ public class SimpleDB {
    public FileMgr fileMgr() {
       return fm;
    }   
+   public AsyncFileMgr asyncFileMgr() {
+      return afm;
+   }   
    public LogMgr logMgr() {
       return lm;
    }   
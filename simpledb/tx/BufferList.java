@@ -5,13 +5,30 @@ import simpledb.file.BlockId;
 import simpledb.buffer.*;
 
 /**
- * Manage the transaction's currently-pinned buffers. 
+ * Manage the transaction's currently-pinned buffers.
+ * The buffer manager pins a block once for the transaction,
+ * however many times the transaction pins it; the list counts
+ * the transaction's pins of each block, so that pinning a block
+ * the transaction has already pinned, as a B-tree traversal or an
+ * index join often does, does not go to the buffer manager.
  * @author Edward Sciore
  */
 class BufferList {
-   private Map<BlockId,Buffer> buffers = new HashMap<>();
-   private List<BlockId> pins = new ArrayList<>();
+   private Map<BlockId,PinnedBuffer> buffers = new HashMap<>();
    private BufferMgr bm;
+
+   /**
+    * A buffer pinned by the transaction, and the number of
+    * times the transaction has pinned it.
+    */
+   private static class PinnedBuffer {
+      final Buffer buff;
+      int pins = 1;
+
+      PinnedBuffer(Buffer buff) {
+         this.buff = buff;
+      }
+   }
   
    public BufferList(BufferMgr bm) {
       this.bm = bm;
@@ -25,40 +42,44 @@ class BufferList {
     * @return the buffer pinned to that block
     */
    Buffer getBuffer(BlockId blk) {
-      return buffers.get(blk);
+      PinnedBuffer pb = buffers.get(blk);
+      return pb == null ? null : pb.buff;
    }
    
    /**
     * Pin the block and keep track of the buffer internally.
+    * If the transaction has already pinned the block,
+    * only its pin count is incremented.
     * @param blk a reference to the disk block
     */
    void pin(BlockId blk) {
-      Buffer buff = bm.pin(blk);
-      buffers.put(blk, buff);
-      pins.add(blk);
+      PinnedBuffer pb = buffers.get(blk);
+      if (pb != null)
+         pb.pins++;
+      else
+         buffers.put(blk, new PinnedBuffer(bm.pin(blk)));
    }
    
    /**
-    * Unpin the specified block.
+    * Unpin the specified block. The buffer is unpinned in
+    * the buffer manager when the transaction's last pin
+    * of the block is released.
     * @param blk a reference to the disk block
     */
    void unpin(BlockId blk) {
-      Buffer buff = buffers.get(blk);
-      bm.unpin(buff);
-      pins.remove(blk);
-      if (!pins.contains(blk))
+      PinnedBuffer pb = buffers.get(blk);
+      if (--pb.pins == 0) {
          buffers.remove(blk);
+         bm.unpin(pb.buff);
+      }
    }
    
    /**
     * Unpin any buffers still pinned by this transaction.
     */
    void unpinAll() {
-      for (BlockId blk : pins) {
-         Buffer buff = buffers.get(blk);
-         bm.unpin(buff);
-      }
+      for (PinnedBuffer pb : buffers.values())
+         bm.unpin(pb.buff);
       buffers.clear();
-      pins.clear();
    }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package simpledb.tx;
+
+import simpledb.server.SimpleDB;
+import simpledb.buffer.*;
+import simpledb.file.BlockId;
+
+public class BufferListTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferlisttest", 400, 8);
+      BufferMgr bm = db.bufferMgr();
+      BufferPoolStats stats = bm.stats();
+      BlockId blk = new BlockId("testfile", 1);
+
+      Transaction tx = db.newTx();
+      long before = stats.getHits() + stats.getMisses();
+      for (int i=0; i<1000; i++)
+         tx.pin(blk);
+      System.out.println("pins that reached the buffer manager: "
+            + (stats.getHits() + stats.getMisses() - before) + " (expected 1)");
+      System.out.println("available buffers: " + bm.available() + " (expected 7)");
+
+      for (int i=0; i<999; i++)
+         tx.unpin(blk);
+      tx.setInt(blk, 80, 1, false); // still pinned
+      System.out.println("available after 999 unpins: " + bm.available() + " (expected 7)");
+      tx.unpin(blk);
+      System.out.println("available after the last unpin: " + bm.available() + " (expected 8)");
+
+      tx.pin(blk);
+      tx.pin(blk);
+      tx.pin(new BlockId("testfile", 2));
+      tx.commit();
+      System.out.println("available after commit: " + bm.available() + " (expected 8)");
+   }
+}
@@ -24,9 +24,10 @@ public class Transaction {
     private FileMgr fm;
     private int txnum;
     private BufferList mybuffers;
+    private int reservedBuffs = 0;
 
     private static final int CKPT_PERIOD = 5;
-    private static List<Integer> txs = new ArrayList<>();
+    private static Map<Integer, Long> txs = Collections.synchronizedMap(new LinkedHashMap<>()); // the START lsn of each active tx
 
     /**
      * Create a new transaction and its associated
@@ -44,31 +45,48 @@ public class Transaction {
         this.fm = fm;
         this.bm = bm;
         txnum = nextTxNumber();
-        recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
+        // the START record is written and listed together, so that a
+        // checkpoint lists every transaction whose START precedes its copy
+        synchronized (txs) {
+            recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
+            txs.put(txnum, recoveryMgr.startLsn());
+        }
         concurMgr = new ConcurrencyMgr(txnum);
         mybuffers = new BufferList(bm);
 
         checkpointIfNeeded(txnum);
-        txs.add(txnum);
         System.out.println("new transaction: " + nextTxNum);
     }
 
     /**
      * Checkpoint every CKPT_PERIOD transactions.
-     * synchronized so that new txs must wait until the checkpoint is finished.
+     * The list of active transactions is shared by all threads,
+     * so it is copied while it is locked. The log is kept from the
+     * oldest START record of the listed transactions, which include
+     * this one; a transaction added to the list after the copy
+     * writes its START record after this one's.
      *
      * @param txnum
      */
-    private synchronized void checkpointIfNeeded(int txnum) {
-        if (txnum % CKPT_PERIOD == 0)
-            recoveryMgr.checkpoint(txs.stream().mapToInt(Integer::intValue).toArray());
+    private void checkpointIfNeeded(int txnum) {
+        if (txnum % CKPT_PERIOD == 0) {
+            int[] active;
+            long startLsn = recoveryMgr.startLsn();
+            synchronized (txs) {
+                active = txs.keySet().stream().mapToInt(Integer::intValue).toArray();
+                for (long lsn : txs.values())
+                    startLsn = Math.min(startLsn, lsn);
+            }
+            recoveryMgr.checkpoint(active, startLsn);
+        }
 
     }
 
     /**
      * Commit the current transaction.
-     * Flush all modified buffers (and their log records),
-     * write and flush a commit record to the log,
+     * Flush the modified buffers (and their log records),
+     * or with no-force commits only those whose changes
+     * were not logged, write and flush a commit record to the log,
      * release all locks, and unpin any pinned buffers.
      */
     public void commit() {
@@ -76,7 +94,8 @@ public class Transaction {
         System.out.println("transaction " + txnum + " committed");
         concurMgr.release();
         mybuffers.unpinAll();
-        txs.remove((Integer) txnum);
+        releaseBuffers(reservedBuffs);
+        txs.remove(txnum);
     }
 
     /**
@@ -91,7 +110,8 @@ public class Transaction {
         System.out.println("transaction " + txnum + " rolled back");
         concurMgr.release();
         mybuffers.unpinAll();
-        txs.remove((Integer) txnum);
+        releaseBuffers(reservedBuffs);
+        txs.remove(txnum);
     }
 
     /**
@@ -160,6 +180,23 @@ public class Transaction {
         return buff.contents().getString(offset);
     }
 
+    /**
+     * Compare the string stored at the specified offset
+     * of the specified block with an encoded key,
+     * without creating a String.
+     * The method first obtains an SLock on the block.
+     *
+     * @param blk    a reference to a disk block
+     * @param offset the byte offset within the block
+     * @param key    the key, encoded as by {@link Page#CHARSET}
+     * @return the sign of the comparison, as for {@link Page#compareString}
+     */
+    public int compareString(BlockId blk, int offset, byte[] key) {
+        concurMgr.sLock(blk);
+        Buffer buff = mybuffers.getBuffer(blk);
+        return buff.contents().compareString(offset, key);
+    }
+
     /**
      * Store an integer at the specified offset
      * of the specified block.
@@ -177,7 +214,7 @@ public class Transaction {
     public void setInt(BlockId blk, int offset, int val, boolean okToLog) {
         concurMgr.xLock(blk);
         Buffer buff = mybuffers.getBuffer(blk);
-        int lsn = -1;
+        long lsn = -1;
         if (okToLog)
             lsn = recoveryMgr.setInt(buff, offset, val);
         Page p = buff.contents();
@@ -202,7 +239,7 @@ public class Transaction {
     public void setString(BlockId blk, int offset, String val, boolean okToLog) {
         concurMgr.xLock(blk);
         Buffer buff = mybuffers.getBuffer(blk);
-        int lsn = -1;
+        long lsn = -1;
         if (okToLog)
             lsn = recoveryMgr.setString(buff, offset, val);
         Page p = buff.contents();
@@ -240,12 +277,75 @@ public class Transaction {
         return fm.append(filename);
     }
 
+    /**
+     * Ask the buffer manager to read the specified blocks
+     * of a file into unpinned buffers ahead of their use.
+     * No locks are obtained: the blocks are only cached,
+     * and are locked as usual when the transaction reads them.
+     *
+     * @param filename the name of the file
+     * @param blknum   the number of the first block
+     * @param count    the number of blocks
+     */
+    public void prefetch(String filename, int blknum, int count) {
+        if (count > 1)
+            bm.prefetch(filename, blknum, count);
+    }
+
+    /**
+     * Return the number of bytes in a block that records can use.
+     */
     public int blockSize() {
-        return fm.blockSize();
+        return fm.usableBlockSize();
     }
 
+    /**
+     * Return the number of unpinned buffers, but no more than
+     * the reservable buffers that no operator has reserved,
+     * whether of this transaction or of another.
+     */
     public int availableBuffs() {
-        return bm.available();
+        return Math.min(bm.available(), bm.unreserved());
+    }
+
+    /**
+     * Return the number of buffers that {@link #reserveBuffers(int, int)}
+     * could reserve now without waiting. Planners estimate the cost of
+     * an operator that reserves its buffers with this number, rather
+     * than with the unpinned buffers that other operators may hold.
+     */
+    public int reservableBuffs() {
+        return bm.unreserved();
+    }
+
+    /**
+     * Reserve buffers for an operator that pins many at once,
+     * waiting until at least the minimum can be reserved.
+     * The reservation is released by {@link #releaseBuffers(int)},
+     * or else when the transaction commits or rolls back.
+     *
+     * @param min the fewest buffers the operator can work with
+     * @param max the most buffers the operator can use
+     * @return the number of buffers reserved
+     * @see BufferMgr#reserve(int, int)
+     */
+    public int reserveBuffers(int min, int max) {
+        int n = bm.reserve(min, max);
+        reservedBuffs += n;
+        return n;
+    }
+
+    /**
+     * Release buffers reserved by {@link #reserveBuffers(int, int)}.
+     *
+     * @param n the number of buffers to release
+     */
+    public void releaseBuffers(int n) {
+        n = Math.min(n, reservedBuffs);
+        if (n > 0) {
+            bm.release(n);
+            reservedBuffs -= n;
+        }
     }
 
     private static synchronized int nextTxNumber() {
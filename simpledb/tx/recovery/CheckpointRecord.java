@@ -40,7 +40,7 @@ public class CheckpointRecord implements LogRecord {
     * and nothing else.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm) {
+   public static long writeToLog(LogMgr lm) {
       byte[] rec = new byte[Integer.BYTES];
       Page p = new Page(rec);
       p.setInt(0, CHECKPOINT);
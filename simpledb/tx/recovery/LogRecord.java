@@ -28,6 +28,19 @@ public interface LogRecord {
      */
     int txNumber();
 
+    /**
+     * Returns the LSN of the previous update record of the
+     * same transaction, or -1 if there is none. The update records
+     * of a transaction are chained this way, newest first, so that
+     * a rollback reads only the transaction's own records.
+     * Only SETINT and SETSTRING records are chained.
+     *
+     * @return the LSN of the transaction's previous update record
+     */
+    default long prevLsn() {
+        return -1;
+    }
+
     /**
      * Undoes the operation encoded by this log record.
      * The only log record types for which this method
@@ -37,6 +50,17 @@ public interface LogRecord {
      */
     void undo(Transaction tx);
 
+    /**
+     * Redoes the operation encoded by this log record,
+     * which recovery does for the records of committed transactions
+     * whose changes may not have reached the disk.
+     * As for undo, only SETINT and SETSTRING records do anything.
+     *
+     * @param tx the transaction that is performing the redo.
+     */
+    default void redo(Transaction tx) {
+    }
+
     /**
      * Interpret the bytes returned by the log iterator.
      *
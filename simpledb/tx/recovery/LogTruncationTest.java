@@ -0,0 +1,74 @@
+package simpledb.tx.recovery;
+
+import java.io.File;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * Run twice. The first run commits many small transactions, with
+ * the log in small segments, so that checkpoints truncate the log;
+ * a long transaction stays unfinished, and the last hundred committed
+ * changes do not reach the disk. The second run recovers from the
+ * log that is left.
+ */
+public class LogTruncationTest {
+   private static SimpleDB db;
+   private static FileMgr fm;
+   private static BlockId blk0 = new BlockId("testfile", 0);
+   private static BlockId blk1 = new BlockId("testfile", 1);
+
+   public static void main(String[] args) {
+      LogMgr.LOG_SEGMENT_BLOCKS = 4;
+      db = new SimpleDB("logtruncationtest", 400, 8);
+      fm = db.fileMgr();
+      if (fm.length("testfile") == 0)
+         modify();
+      else
+         recover();
+   }
+
+   private static void modify() {
+      Transaction tx0 = db.newTx();
+      tx0.append("testfile");
+      tx0.append("testfile");
+      tx0.commit();
+      update(1, 100);
+      db.bufferMgr().flushAll(); // as a buffer cleaner would
+
+      // the long transaction's change reaches the disk
+      Transaction txLong = db.newTx();
+      txLong.pin(blk1);
+      txLong.setInt(blk1, 0, 456, true);
+      db.bufferMgr().flushAll();
+
+      update(101, 200);
+      boolean truncated = !new File("logtruncationtest", "simpledb.000000.log").exists();
+      System.out.println("first segment removed by checkpoints: " + truncated + " (expected true)");
+      printValues("Before the crash:", "100 456");
+   }
+
+   private static void update(int first, int last) {
+      for (int i=first; i<=last; i++) {
+         Transaction tx = db.newTx();
+         tx.pin(blk0);
+         tx.setInt(blk0, 0, i, true);
+         tx.commit();
+      }
+   }
+
+   private static void recover() {
+      Transaction tx = db.newTx();
+      tx.recover();
+      printValues("After recovery:", "200 0");
+   }
+
+   private static void printValues(String msg, String expected) {
+      Page p0 = new Page(fm.blockSize());
+      Page p1 = new Page(fm.blockSize());
+      fm.read(blk0, p0);
+      fm.read(blk1, p1);
+      System.out.println(msg + " " + p0.getInt(0) + " " + p1.getInt(0) + " (expected " + expected + ")");
+   }
+}
@@ -13,6 +13,7 @@ import java.util.Arrays;
  */
 public class NQCheckpointRecord implements LogRecord {
     private int[] activeTxns;
+    private long minRecLsn;
 
     /**
      * Create a new non-quiescent checkpoint log record.
@@ -27,6 +28,7 @@ public class NQCheckpointRecord implements LogRecord {
             txnCountPos += Integer.BYTES;
             activeTxns[i] = p.getInt(txnCountPos);
         }
+        minRecLsn = p.getLong(txnCountPos + Integer.BYTES);
     }
 
     public int op() {
@@ -49,19 +51,20 @@ public class NQCheckpointRecord implements LogRecord {
     }
 
     public String toString() {
-        return "<NQCKPT " + activeTxns.length + " " + Arrays.toString(activeTxns) + " >";
+        return "<NQCKPT " + activeTxns.length + " " + Arrays.toString(activeTxns) + " " + minRecLsn + " >";
     }
 
     /**
      * A static method to write a checkpoint record to the log.
-     * This log record contains the NQCKPT operator, count of txns and the txns themselves,
-     * e.g. <6, 2, 22, 24>
+     * This log record contains the NQCKPT operator, count of txns, the txns themselves
+     * and the smallest recLSN of the dirty buffers,
+     * e.g. <6, 2, 22, 24, 310>
      *
      * @return the LSN of the last log value
      */
-    public static int writeToLog(LogMgr lm, int[] activeTxns) {
+    public static long writeToLog(LogMgr lm, int[] activeTxns, long minRecLsn) {
         int cpos = Integer.BYTES;
-        byte[] rec = new byte[2 * Integer.BYTES + activeTxns.length * Integer.BYTES];
+        byte[] rec = new byte[2 * Integer.BYTES + activeTxns.length * Integer.BYTES + Long.BYTES];
         Page p = new Page(rec);
         p.setInt(0, NQCKPT);
         p.setInt(cpos, activeTxns.length);
@@ -69,6 +72,7 @@ public class NQCheckpointRecord implements LogRecord {
             cpos += Integer.BYTES;
             p.setInt(cpos, activeTxns[i]);
         }
+        p.setLong(cpos + Integer.BYTES, minRecLsn);
         return lm.append(rec);
     }
 
@@ -78,4 +82,15 @@ public class NQCheckpointRecord implements LogRecord {
     public int[] txList() {
         return activeTxns;
     }
+
+    /**
+     * Return the smallest recLSN of the buffers that were dirty
+     * when the checkpoint was taken, or -1 if there were none.
+     * Every change logged before it had been written to disk.
+     *
+     * @return the smallest recLSN
+     */
+    public long minRecLsn() {
+        return minRecLsn;
+    }
 }
@@ -0,0 +1,63 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Run twice. The first run commits a transaction without its
+ * changes reaching the disk, leaves another unfinished, and exits
+ * as if it crashed. The second run recovers the committed changes.
+ */
+public class NoForceTest {
+   private static SimpleDB db;
+   private static FileMgr fm;
+   private static BlockId blk0 = new BlockId("testfile", 0);
+   private static BlockId blk1 = new BlockId("testfile", 1);
+
+   public static void main(String[] args) {
+      db = new SimpleDB("noforcetest", 400, 8);
+      fm = db.fileMgr();
+      if (fm.length("testfile") == 0)
+         modify();
+      else
+         recover();
+   }
+
+   private static void modify() {
+      Transaction tx0 = db.newTx();
+      tx0.append("testfile");
+      tx0.append("testfile");
+      tx0.commit();
+
+      Transaction tx1 = db.newTx();
+      tx1.pin(blk1);
+      tx1.setInt(blk1, 0, 456, true);
+      db.bufferMgr().flushAll(); // the unfinished change reaches the disk
+
+      int writesBefore = fm.getStatistics().blksWritten();
+      Transaction tx2 = db.newTx();
+      tx2.pin(blk0);
+      tx2.setInt(blk0, 0, 123, true);
+      tx2.setString(blk0, 20, "committed", true);
+      tx2.commit();
+      System.out.println("blocks written by the commit: "
+            + (fm.getStatistics().blksWritten() - writesBefore) + " (expected 1, a log block)");
+      printValues("Before the crash:", "0  456");
+   }
+
+   private static void recover() {
+      Transaction tx = db.newTx();
+      tx.recover();
+      printValues("After recovery:", "123 committed 0");
+   }
+
+   private static void printValues(String msg, String expected) {
+      Page p0 = new Page(fm.blockSize());
+      Page p1 = new Page(fm.blockSize());
+      fm.read(blk0, p0);
+      fm.read(blk1, p1);
+      System.out.println(msg + " " + p0.getInt(0) + " " + p0.getString(20) + " " + p1.getInt(0)
+            + " (expected " + expected + ")");
+   }
+}
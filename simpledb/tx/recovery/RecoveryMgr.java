@@ -11,14 +11,32 @@ import static simpledb.tx.recovery.LogRecord.*;
 
 /**
  * The recovery manager.  Each transaction has its own recovery manager.
+ * <p>
+ * Update log records hold both the old and the new value, so recovery
+ * can undo the changes of unfinished transactions and redo those of
+ * committed ones. With {@link #NO_FORCE} set, a commit therefore does
+ * not write the transaction's buffers: it only flushes the log, and
+ * the buffers are written later, when they are replaced or cleaned
+ * or at the next checkpoint.
  *
  * @author Edward Sciore
  */
 public class RecoveryMgr {
+    /**
+     * Whether commits leave the transaction's modified buffers
+     * to be written later. Recovery then redoes the committed
+     * transactions since the last quiescent checkpoint, so the
+     * setting must not be turned off between a crash and the
+     * recovery that follows it.
+     */
+    public static boolean NO_FORCE = true;
+
     private LogMgr lm;
     private BufferMgr bm;
     private Transaction tx;
     private int txnum;
+    private long startLsn; // the LSN of the transaction's START record
+    private long lastLsn = -1; // the LSN of the transaction's last update record
 
     /**
      * Create a recovery manager for the specified transaction.
@@ -30,15 +48,29 @@ public class RecoveryMgr {
         this.txnum = txnum;
         this.lm = lm;
         this.bm = bm;
-        StartRecord.writeToLog(lm, txnum);
+        startLsn = StartRecord.writeToLog(lm, txnum);
+    }
+
+    /**
+     * Return the LSN of the transaction's START record,
+     * before which the log holds none of its records.
+     */
+    public long startLsn() {
+        return startLsn;
     }
 
     /**
      * Write a commit record to the log, and flushes it to disk.
+     * Unless commits are no-force, the transaction's buffers are
+     * flushed first; if they are, only the buffers holding changes
+     * that were not logged are.
      */
     public void commit() {
-        bm.flushAll(txnum);
-        int lsn = CommitRecord.writeToLog(lm, txnum);
+        if (NO_FORCE)
+            bm.flushUnlogged(txnum);
+        else
+            bm.flushAll(txnum);
+        long lsn = CommitRecord.writeToLog(lm, txnum);
         lm.flush(lsn);
     }
 
@@ -48,19 +80,21 @@ public class RecoveryMgr {
     public void rollback() {
         doRollback();
         bm.flushAll(txnum);
-        int lsn = RollbackRecord.writeToLog(lm, txnum);
+        long lsn = RollbackRecord.writeToLog(lm, txnum);
         lm.flush(lsn);
     }
 
     /**
      * Recover uncompleted transactions from the log
      * and then write a quiescent checkpoint record to the log and flush it.
+     * Recovery never reads past that record, so the log before it is truncated.
      */
     public void recover() {
         doRecover();
-        bm.flushAll(txnum);
-        int lsn = CheckpointRecord.writeToLog(lm);
+        bm.flushAll();
+        long lsn = CheckpointRecord.writeToLog(lm);
         lm.flush(lsn);
+        lm.truncate(lsn);
     }
 
     /**
@@ -70,10 +104,11 @@ public class RecoveryMgr {
      * @param offset the offset of the value in the page
      * @param newval the value to be written
      */
-    public int setInt(Buffer buff, int offset, int newval) {
+    public long setInt(Buffer buff, int offset, int newval) {
         int oldval = buff.contents().getInt(offset);
         BlockId blk = buff.block();
-        return SetIntRecord.writeToLog(lm, txnum, blk, offset, oldval);
+        lastLsn = SetIntRecord.writeToLog(lm, txnum, lastLsn, blk, offset, oldval, newval);
+        return lastLsn;
     }
 
     /**
@@ -83,29 +118,24 @@ public class RecoveryMgr {
      * @param offset the offset of the value in the page
      * @param newval the value to be written
      */
-    public int setString(Buffer buff, int offset, String newval) {
+    public long setString(Buffer buff, int offset, String newval) {
         String oldval = buff.contents().getString(offset);
         BlockId blk = buff.block();
-        return SetStringRecord.writeToLog(lm, txnum, blk, offset, oldval);
+        lastLsn = SetStringRecord.writeToLog(lm, txnum, lastLsn, blk, offset, oldval, newval);
+        return lastLsn;
     }
 
     /**
-     * Rollback the transaction, by iterating
-     * through the log records until it finds
-     * the transaction's START record,
-     * calling undo() for each of the transaction's
-     * log records.
+     * Rollback the transaction, by following the chain
+     * of its update records from the last one back,
+     * calling undo() for each of them. The records of
+     * other transactions are never read.
      */
     private void doRollback() {
-        Iterator<byte[]> iter = lm.iterator();
-        while (iter.hasNext()) {
-            byte[] bytes = iter.next();
-            LogRecord rec = LogRecord.createLogRecord(bytes);
-            if (rec.txNumber() == txnum) {
-                if (rec.op() == START)
-                    return;
-                rec.undo(tx);
-            }
+        for (long lsn = lastLsn; lsn >= 0; ) {
+            LogRecord rec = LogRecord.createLogRecord(lm.read(lsn));
+            rec.undo(tx);
+            lsn = rec.prevLsn();
         }
     }
 
@@ -116,8 +146,14 @@ public class RecoveryMgr {
      * transaction, it calls undo() on that record.
      * The method stops when it encounters a CHECKPOINT record
      * or the end of the log.
+     * If commits are no-force, the records of committed transactions
+     * are then redone, from the oldest to the newest.
      */
     private void doRecover() {
+        if (NO_FORCE) {
+            doUndoRedo();
+            return;
+        }
         Collection<Integer> finishedTxs = new ArrayList<>();
         int earliestActiveTx = -1;
         Iterator<byte[]> iter = lm.iterator();
@@ -156,12 +192,67 @@ public class RecoveryMgr {
     }
 
     /**
-     * A method to write a non-quiescent checkpoint record to the log.
+     * Undo the unfinished transactions and redo the committed ones.
+     * A committed transaction's changes may not be on disk unless
+     * they precede the last quiescent checkpoint, so the log is read
+     * back to that checkpoint; the commit record of a transaction comes
+     * before its updates when reading backwards, so the updates to redo
+     * are known as they are read. Non-quiescent checkpoints are passed,
+     * because they do not flush the buffers.
+     */
+    private void doUndoRedo() {
+        Set<Integer> finishedTxs = new HashSet<>();
+        Set<Integer> committedTxs = new HashSet<>();
+        Deque<LogRecord> redoRecs = new ArrayDeque<>();
+        Iterator<byte[]> iter = lm.iterator();
+        while (iter.hasNext()) {
+            byte[] bytes = iter.next();
+            LogRecord rec = LogRecord.createLogRecord(bytes);
+            assert rec != null;
+            System.out.println(rec);
+            if (rec.op() == CHECKPOINT)
+                break;
+            switch (rec.op()) {
+                case COMMIT:
+                    committedTxs.add(rec.txNumber());
+                    finishedTxs.add(rec.txNumber());
+                    break;
+                case ROLLBACK:
+                    finishedTxs.add(rec.txNumber());
+                    break;
+                case SETINT:
+                case SETSTRING:
+                    if (committedTxs.contains(rec.txNumber()))
+                        redoRecs.push(rec);
+                    else if (!finishedTxs.contains(rec.txNumber()))
+                        rec.undo(tx);
+                    break;
+                default:
+                    break;
+            }
+        }
+        // the deque is in log order, since records were pushed newest first
+        for (LogRecord rec : redoRecs)
+            rec.redo(tx);
+    }
+
+    /**
+     * A method to write a non-quiescent checkpoint record to the log,
+     * along with the smallest recLSN of the dirty buffers, and then
+     * truncate the log before the oldest record that recovery may need.
+     * Recovery undoes records of the active transactions, which follow
+     * their START records, and redoes committed records, which are on
+     * disk if they precede the smallest recLSN.
      *
      * @param activeTxns the list of active transactions
+     * @param startLsn   the LSN of the oldest START record of the active
+     *                   transactions; every transaction that starts later
+     *                   appends its records after it
      */
-    public void checkpoint(int[] activeTxns) {
-        int lsn = NQCheckpointRecord.writeToLog(lm, activeTxns);
+    public void checkpoint(int[] activeTxns, long startLsn) {
+        long minRecLsn = bm.minRecLsn();
+        long lsn = NQCheckpointRecord.writeToLog(lm, activeTxns, minRecLsn);
         lm.flush(lsn);
+        lm.truncate(minRecLsn < 0 ? startLsn : Math.min(startLsn, minRecLsn));
     }
 }
@@ -0,0 +1,49 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Rolls back a transaction whose two updates are followed in the log
+ * by thousands of records of another transaction. The rollback follows
+ * its own chain of records, so it reads one log block per record
+ * instead of reading the log back to its START record.
+ */
+public class RollbackChainTest {
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("rollbackchaintest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      BlockId blk0 = new BlockId("testfile", 0);
+      BlockId blk1 = new BlockId("testfile", 1);
+      Transaction tx0 = db.newTx();
+      tx0.append("testfile");
+      tx0.append("testfile");
+      tx0.commit();
+
+      Transaction txA = db.newTx();
+      txA.pin(blk0);
+      txA.setInt(blk0, 0, 111, true);
+      txA.setString(blk0, 20, "rolled back", true);
+
+      Transaction txB = db.newTx();
+      txB.pin(blk1);
+      for (int i=1; i<=2000; i++)
+         txB.setInt(blk1, 0, i, true);
+      txB.commit();
+
+      int logBlocks = (int) (db.logMgr().latestLSN() / fm.blockSize(SimpleDB.LOG_FILE)) + 1;
+      int before = fm.getStatistics().blksRead();
+      txA.rollback();
+      System.out.println("log blocks: " + logBlocks + "; read by the rollback: "
+            + (fm.getStatistics().blksRead() - before) + " (expected 2)");
+
+      Page p = new Page(fm.blockSize());
+      fm.read(blk0, p);
+      System.out.println("block 0 after the rollback: " + p.getInt(0) + " '" + p.getString(20) + "' (expected 0 '')");
+      Transaction tx1 = db.newTx();
+      tx1.pin(blk1);
+      System.out.println("block 1 of the other transaction: " + tx1.getInt(blk1, 0) + " (expected 2000)");
+      tx1.commit();
+   }
+}
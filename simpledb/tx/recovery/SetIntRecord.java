@@ -5,7 +5,8 @@ import simpledb.log.LogMgr;
 import simpledb.tx.Transaction;
 
 public class SetIntRecord implements LogRecord {
-    private int txnum, offset, val;
+    private int txnum, offset, val, newval;
+    private long prevLsn;
     private BlockId blk;
 
     /**
@@ -16,7 +17,9 @@ public class SetIntRecord implements LogRecord {
     public SetIntRecord(Page p) {
         int tpos = Integer.BYTES;
         txnum = p.getInt(tpos);
-        int fpos = tpos + Integer.BYTES;
+        int ppos = tpos + Integer.BYTES;
+        prevLsn = p.getLong(ppos);
+        int fpos = ppos + Long.BYTES;
         String filename = p.getString(fpos);
         int bpos = fpos + Page.maxLength(filename.length());
         int blknum = p.getInt(bpos);
@@ -25,6 +28,7 @@ public class SetIntRecord implements LogRecord {
         offset = p.getInt(opos);
         int vpos = opos + Integer.BYTES;
         val = p.getInt(vpos);
+        newval = p.getInt(vpos + Integer.BYTES);
     }
 
     public int op() {
@@ -35,8 +39,12 @@ public class SetIntRecord implements LogRecord {
         return txnum;
     }
 
+    public long prevLsn() {
+        return prevLsn;
+    }
+
     public String toString() {
-        return "<SETINT " + txnum + " " + blk + " " + offset + " " + val + ">";
+        return "<SETINT " + txnum + " " + blk + " " + offset + " " + val + " " + newval + ">";
     }
 
     /**
@@ -54,29 +62,46 @@ public class SetIntRecord implements LogRecord {
         tx.unpin(blk);
     }
 
+    /**
+     * Write the new value saved in the log record back
+     * to the block, in the same way that undo restores the old one.
+     *
+     * @see simpledb.tx.recovery.LogRecord#redo(Transaction)
+     */
+    public void redo(Transaction tx) {
+        System.out.println("redoing record");
+        tx.pin(blk);
+        tx.setInt(blk, offset, newval, false); // don't log the redo!
+        tx.unpin(blk);
+    }
+
     /**
      * A static method to write a setInt record to the log.
      * This log record contains the SETINT operator,
-     * followed by the transaction id, the filename, number,
-     * and offset of the modified block, and the previous
-     * integer value at that offset.
+     * followed by the transaction id, the LSN of the
+     * transaction's previous update record (or -1), the filename, number,
+     * and offset of the modified block, the previous
+     * integer value at that offset, and the new value.
      *
      * @return the LSN of the last log value
      */
-    public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, int val) {
+    public static long writeToLog(LogMgr lm, int txnum, long prevLsn, BlockId blk, int offset, int val, int newval) {
         int tpos = Integer.BYTES;
-        int fpos = tpos + Integer.BYTES;
+        int ppos = tpos + Integer.BYTES;
+        int fpos = ppos + Long.BYTES;
         int bpos = fpos + Page.maxLength(blk.fileName().length());
         int opos = bpos + Integer.BYTES;
         int vpos = opos + Integer.BYTES;
-        byte[] rec = new byte[vpos + Integer.BYTES];
+        byte[] rec = new byte[vpos + 2 * Integer.BYTES];
         Page p = new Page(rec);
         p.setInt(0, SETINT);
         p.setInt(tpos, txnum);
+        p.setLong(ppos, prevLsn);
         p.setString(fpos, blk.fileName());
         p.setInt(bpos, blk.number());
         p.setInt(opos, offset);
         p.setInt(vpos, val);
+        p.setInt(vpos + Integer.BYTES, newval);
         return lm.append(rec);
     }
 }
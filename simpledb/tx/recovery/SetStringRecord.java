@@ -6,7 +6,8 @@ import simpledb.tx.Transaction;
 
 public class SetStringRecord implements LogRecord {
     private int txnum, offset;
-    private String val;
+    private String val, newval;
+    private long prevLsn;
     private BlockId blk;
 
     /**
@@ -17,7 +18,9 @@ public class SetStringRecord implements LogRecord {
     public SetStringRecord(Page p) {
         int tpos = Integer.BYTES;
         txnum = p.getInt(tpos);
-        int fpos = tpos + Integer.BYTES;
+        int ppos = tpos + Integer.BYTES;
+        prevLsn = p.getLong(ppos);
+        int fpos = ppos + Long.BYTES;
         String filename = p.getString(fpos);
         int bpos = fpos + Page.maxLength(filename.length());
         int blknum = p.getInt(bpos);
@@ -26,6 +29,7 @@ public class SetStringRecord implements LogRecord {
         offset = p.getInt(opos);
         int vpos = opos + Integer.BYTES;
         val = p.getString(vpos);
+        newval = p.getString(vpos + Page.maxLength(val.length()));
     }
 
     public int op() {
@@ -36,8 +40,12 @@ public class SetStringRecord implements LogRecord {
         return txnum;
     }
 
+    public long prevLsn() {
+        return prevLsn;
+    }
+
     public String toString() {
-        return "<SETSTRING " + txnum + " " + blk + " " + offset + " " + val + ">";
+        return "<SETSTRING " + txnum + " " + blk + " " + offset + " " + val + " " + newval + ">";
     }
 
     /**
@@ -55,30 +63,48 @@ public class SetStringRecord implements LogRecord {
         tx.unpin(blk);
     }
 
+    /**
+     * Write the new value saved in the log record back
+     * to the block, in the same way that undo restores the old one.
+     *
+     * @see simpledb.tx.recovery.LogRecord#redo(Transaction)
+     */
+    public void redo(Transaction tx) {
+        System.out.println("redoing record");
+        tx.pin(blk);
+        tx.setString(blk, offset, newval, false); // don't log the redo!
+        tx.unpin(blk);
+    }
+
     /**
      * A static method to write a setInt record to the log.
      * This log record contains the SETINT operator,
-     * followed by the transaction id, the filename, number,
-     * and offset of the modified block, and the previous
-     * integer value at that offset.
+     * followed by the transaction id, the LSN of the
+     * transaction's previous update record (or -1), the filename, number,
+     * and offset of the modified block, the previous
+     * string value at that offset, and the new value.
      *
      * @return the LSN of the last log value
      */
-    public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, String val) {
+    public static long writeToLog(LogMgr lm, int txnum, long prevLsn, BlockId blk, int offset, String val, String newval) {
         int tpos = Integer.BYTES;
-        int fpos = tpos + Integer.BYTES;
+        int ppos = tpos + Integer.BYTES;
+        int fpos = ppos + Long.BYTES;
         int bpos = fpos + Page.maxLength(blk.fileName().length());
         int opos = bpos + Integer.BYTES;
         int vpos = opos + Integer.BYTES;
-        int reclen = vpos + Page.maxLength(val.length());
+        int npos = vpos + Page.maxLength(val.length());
+        int reclen = npos + Page.maxLength(newval.length());
         byte[] rec = new byte[reclen];
         Page p = new Page(rec);
         p.setInt(0, SETSTRING);
         p.setInt(tpos, txnum);
+        p.setLong(ppos, prevLsn);
         p.setString(fpos, blk.fileName());
         p.setInt(bpos, blk.number());
         p.setInt(opos, offset);
         p.setString(vpos, val);
+        p.setString(npos, newval);
         return lm.append(rec);
     }
 }
\ No newline at end of file